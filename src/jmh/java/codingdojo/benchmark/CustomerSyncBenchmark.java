@@ -0,0 +1,142 @@
+package codingdojo.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import codingdojo.model.Address;
+import codingdojo.model.Customer;
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.ShoppingList;
+import codingdojo.model.enums.CustomerType;
+import codingdojo.repository.InMemoryCustomerDataLayer;
+import codingdojo.service.CustomerSync;
+
+/**
+ * Throughput of {@link CustomerSync#syncWithDataLayer} against {@link InMemoryCustomerDataLayer}, so the
+ * numbers reflect the sync logic rather than a database. Each benchmark cycles through {@code customers}
+ * pre-stored customers; {@code shoppingLists} sets the number of shopping lists in every payload.
+ * The store is rebuilt before each iteration. Run with {@code -prof gc} for allocation rates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CustomerSyncBenchmark {
+
+    @Param({"1000", "100000"})
+    int customers;
+
+    @Param({"1", "100"})
+    int shoppingLists;
+
+    private InMemoryCustomerDataLayer db;
+    private CustomerSync sync;
+    private ExternalCustomer[] persons;
+    private ExternalCustomer[] companiesByExternalId;
+    private ExternalCustomer[] companiesByCompanyNumber;
+    private ExternalCustomer[] companiesWithDuplicate;
+    private int cursor;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        db = new InMemoryCustomerDataLayer();
+        sync = new CustomerSync(db);
+        List<ShoppingList> payloadShoppingLists = new ArrayList<>(shoppingLists);
+        for (int i = 0; i < shoppingLists; i++) {
+            payloadShoppingLists.add(new ShoppingList("lipstick " + i, "blusher", "mascara"));
+        }
+
+        persons = new ExternalCustomer[customers];
+        companiesByExternalId = new ExternalCustomer[customers];
+        companiesByCompanyNumber = new ExternalCustomer[customers];
+        companiesWithDuplicate = new ExternalCustomer[customers];
+        for (int i = 0; i < customers; i++) {
+            db.createCustomerRecord(storedCustomer(CustomerType.PERSON, "person-" + i, null));
+            persons[i] = externalCustomer("person-" + i, null, payloadShoppingLists);
+
+            db.createCustomerRecord(storedCustomer(CustomerType.COMPANY, "company-" + i, "company-number-" + i));
+            companiesByExternalId[i] = externalCustomer("company-" + i, "company-number-" + i, payloadShoppingLists);
+
+            db.createCustomerRecord(storedCustomer(CustomerType.COMPANY, null, "unkeyed-number-" + i));
+            companiesByCompanyNumber[i] = externalCustomer("unkeyed-" + i, "unkeyed-number-" + i, payloadShoppingLists);
+
+            db.createCustomerRecord(storedCustomer(CustomerType.COMPANY, "duplicated-" + i, "duplicated-number-" + i));
+            Customer duplicate = storedCustomer(CustomerType.COMPANY, null, "duplicate-number-" + i);
+            duplicate.setMasterExternalId("duplicated-" + i);
+            db.createCustomerRecord(duplicate);
+            companiesWithDuplicate[i] = externalCustomer("duplicated-" + i, "duplicated-number-" + i, payloadShoppingLists);
+        }
+        cursor = 0;
+    }
+
+    @Benchmark
+    public boolean syncPersonByExternalId() {
+        return sync.syncWithDataLayer(next(persons));
+    }
+
+    @Benchmark
+    public boolean syncCompanyByExternalId() {
+        return sync.syncWithDataLayer(next(companiesByExternalId));
+    }
+
+    @Benchmark
+    public boolean syncCompanyByCompanyNumber() {
+        ExternalCustomer externalCustomer = next(companiesByCompanyNumber);
+        boolean created = sync.syncWithDataLayer(externalCustomer);
+        // a company-number match stores the external id; drop it again so the next round takes the same path.
+        // This adds one in-memory write to every invocation.
+        Customer customer = db.findByExternalId(externalCustomer.getExternalId());
+        customer.setExternalId(null);
+        customer.setMasterExternalId(null);
+        db.updateCustomerRecord(customer);
+        return created;
+    }
+
+    @Benchmark
+    public boolean syncCompanyWithDuplicate() {
+        return sync.syncWithDataLayer(next(companiesWithDuplicate));
+    }
+
+    private ExternalCustomer next(ExternalCustomer[] records) {
+        ExternalCustomer externalCustomer = records[cursor];
+        cursor = cursor + 1 == records.length ? 0 : cursor + 1;
+        return externalCustomer;
+    }
+
+    private static Customer storedCustomer(CustomerType customerType, String externalId, String companyNumber) {
+        return Customer.builder()
+            .customerType(customerType)
+            .externalId(externalId)
+            .companyNumber(companyNumber)
+            .name("stored")
+            .build();
+    }
+
+    private static ExternalCustomer externalCustomer(String externalId, String companyNumber, List<ShoppingList> shoppingLists) {
+        return ExternalCustomer.builder()
+            .externalId(externalId)
+            .companyNumber(companyNumber)
+            .name("Acme Inc.")
+            .preferredStore("Nordstan")
+            .address(new Address("123 main st", "Helsingborg", "SE-123 45"))
+            .shoppingLists(shoppingLists)
+            .bonusPointsBalance(companyNumber == null ? 25 : null)
+            .build();
+    }
+}
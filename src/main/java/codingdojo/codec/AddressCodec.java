@@ -0,0 +1,51 @@
+package codingdojo.codec;
+
+import java.nio.ByteBuffer;
+
+import codingdojo.model.Address;
+import codingdojo.model.StringDictionary;
+
+/**
+ * Nested encoding of an {@link Address}: a bit set of the present parts, then the parts.
+ */
+final class AddressCodec {
+    private static final int STREET = 1;
+    private static final int CITY = 1 << 1;
+    private static final int POSTAL_CODE = 1 << 2;
+
+    private AddressCodec() {
+    }
+
+    static void encode(Address address, ByteBuffer buffer) {
+        int present = presentParts(address);
+        buffer.put((byte) present);
+        if ((present & STREET) != 0) BinaryFormat.putString(buffer, address.street());
+        if ((present & CITY) != 0) BinaryFormat.putString(buffer, address.city());
+        if ((present & POSTAL_CODE) != 0) BinaryFormat.putString(buffer, address.postalCode());
+    }
+
+    static Address decode(ByteBuffer buffer, StringDictionary dictionary) {
+        int present = buffer.get();
+        String street = (present & STREET) != 0 ? BinaryFormat.getString(buffer) : null;
+        String city = (present & CITY) != 0 ? dictionary.intern(BinaryFormat.getString(buffer)) : null;
+        String postalCode = (present & POSTAL_CODE) != 0 ? dictionary.intern(BinaryFormat.getString(buffer)) : null;
+        return new Address(street, city, postalCode);
+    }
+
+    static int encodedSize(Address address) {
+        int present = presentParts(address);
+        int size = 1;
+        if ((present & STREET) != 0) size += BinaryFormat.stringSize(address.street());
+        if ((present & CITY) != 0) size += BinaryFormat.stringSize(address.city());
+        if ((present & POSTAL_CODE) != 0) size += BinaryFormat.stringSize(address.postalCode());
+        return size;
+    }
+
+    private static int presentParts(Address address) {
+        int present = 0;
+        if (address.street() != null) present |= STREET;
+        if (address.city() != null) present |= CITY;
+        if (address.postalCode() != null) present |= POSTAL_CODE;
+        return present;
+    }
+}
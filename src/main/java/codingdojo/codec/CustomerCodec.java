@@ -0,0 +1,125 @@
+package codingdojo.codec;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import codingdojo.model.Customer;
+import codingdojo.model.StringDictionary;
+
+/**
+ * Compact binary encoding of a {@link Customer}, written straight to and read straight from a
+ * {@link ByteBuffer}.
+ * <p>
+ * Layout: a format version byte, a varint bit set of the fields that are present, then the present
+ * fields in declaration order. Strings are varint-length UTF-8, the customer type a fixed one-byte
+ * code, the bonus points balance a zigzag varint, the fingerprint eight bytes and the applied sequence
+ * number a varint. Shopping lists follow as a count and their {@link ShoppingListCodec} encodings.
+ * Encoding into a buffer that is too small throws {@link java.nio.BufferOverflowException}; size the
+ * buffer with {@link #encodedSize}.
+ * <p>
+ * Version 2 added the applied sequence number as a new field bit, so version 1 data still decodes.
+ */
+public final class CustomerCodec {
+    public static final byte VERSION = 2;
+
+    private static final int INTERNAL_ID = 1;
+    private static final int EXTERNAL_ID = 1 << 1;
+    private static final int MASTER_EXTERNAL_ID = 1 << 2;
+    private static final int COMPANY_NUMBER = 1 << 3;
+    private static final int NAME = 1 << 4;
+    private static final int PREFERRED_STORE = 1 << 5;
+    private static final int CUSTOMER_TYPE = 1 << 6;
+    private static final int BONUS_POINTS_BALANCE = 1 << 7;
+    private static final int FINGERPRINT = 1 << 8;
+    private static final int ADDRESS = 1 << 9;
+    private static final int APPLIED_SEQUENCE_NUMBER = 1 << 10;
+
+    private CustomerCodec() {
+    }
+
+    public static void encode(Customer customer, ByteBuffer buffer) {
+        int present = presentFields(customer);
+        buffer.put(VERSION);
+        BinaryFormat.putVarint(buffer, present);
+        if ((present & INTERNAL_ID) != 0) BinaryFormat.putString(buffer, customer.getInternalId());
+        if ((present & EXTERNAL_ID) != 0) BinaryFormat.putString(buffer, customer.getExternalId());
+        if ((present & MASTER_EXTERNAL_ID) != 0) BinaryFormat.putString(buffer, customer.getMasterExternalId());
+        if ((present & COMPANY_NUMBER) != 0) BinaryFormat.putString(buffer, customer.getCompanyNumber());
+        if ((present & NAME) != 0) BinaryFormat.putString(buffer, customer.getName());
+        if ((present & PREFERRED_STORE) != 0) BinaryFormat.putString(buffer, customer.getPreferredStore());
+        if ((present & CUSTOMER_TYPE) != 0) buffer.put(CustomerTypeCodes.code(customer.getCustomerType()));
+        if ((present & BONUS_POINTS_BALANCE) != 0) BinaryFormat.putSignedVarint(buffer, customer.getBonusPointsBalance());
+        if ((present & FINGERPRINT) != 0) buffer.putLong(customer.getFingerprint());
+        if ((present & ADDRESS) != 0) AddressCodec.encode(customer.getAddress(), buffer);
+        if ((present & APPLIED_SEQUENCE_NUMBER) != 0) BinaryFormat.putVarlong(buffer, customer.getAppliedSequenceNumber());
+        ShoppingListCodec.encodeAll(customer.getShoppingLists(), buffer);
+    }
+
+    /**
+     * Decodes a customer from the buffer's position, leaving the position after it.
+     *
+     * @throws IllegalArgumentException if the data was written by an unknown format version
+     */
+    public static Customer decode(ByteBuffer buffer) {
+        return decode(buffer, StringDictionary.NONE);
+    }
+
+    /**
+     * Like {@link #decode(ByteBuffer)}, but shares the preferred store, city, postal code and products
+     * through the dictionary.
+     */
+    public static Customer decode(ByteBuffer buffer, StringDictionary dictionary) {
+        byte version = buffer.get();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported customer format version " + version);
+        }
+        int present = BinaryFormat.getVarint(buffer);
+        return Customer.builder()
+            .internalId((present & INTERNAL_ID) != 0 ? BinaryFormat.getString(buffer) : null)
+            .externalId((present & EXTERNAL_ID) != 0 ? BinaryFormat.getString(buffer) : null)
+            .masterExternalId((present & MASTER_EXTERNAL_ID) != 0 ? BinaryFormat.getString(buffer) : null)
+            .companyNumber((present & COMPANY_NUMBER) != 0 ? BinaryFormat.getString(buffer) : null)
+            .name((present & NAME) != 0 ? BinaryFormat.getString(buffer) : null)
+            .preferredStore((present & PREFERRED_STORE) != 0 ? dictionary.intern(BinaryFormat.getString(buffer)) : null)
+            .customerType((present & CUSTOMER_TYPE) != 0 ? CustomerTypeCodes.customerType(buffer.get()) : null)
+            .bonusPointsBalance((present & BONUS_POINTS_BALANCE) != 0 ? BinaryFormat.getSignedVarint(buffer) : null)
+            .fingerprint((present & FINGERPRINT) != 0 ? buffer.getLong() : null)
+            .address((present & ADDRESS) != 0 ? AddressCodec.decode(buffer, dictionary) : null)
+            .appliedSequenceNumber((present & APPLIED_SEQUENCE_NUMBER) != 0 ? BinaryFormat.getVarlong(buffer) : null)
+            .shoppingLists(Arrays.asList(ShoppingListCodec.decodeAll(buffer, dictionary)))
+            .build();
+    }
+
+    public static int encodedSize(Customer customer) {
+        int present = presentFields(customer);
+        int size = 1 + BinaryFormat.varintSize(present);
+        if ((present & INTERNAL_ID) != 0) size += BinaryFormat.stringSize(customer.getInternalId());
+        if ((present & EXTERNAL_ID) != 0) size += BinaryFormat.stringSize(customer.getExternalId());
+        if ((present & MASTER_EXTERNAL_ID) != 0) size += BinaryFormat.stringSize(customer.getMasterExternalId());
+        if ((present & COMPANY_NUMBER) != 0) size += BinaryFormat.stringSize(customer.getCompanyNumber());
+        if ((present & NAME) != 0) size += BinaryFormat.stringSize(customer.getName());
+        if ((present & PREFERRED_STORE) != 0) size += BinaryFormat.stringSize(customer.getPreferredStore());
+        if ((present & CUSTOMER_TYPE) != 0) size += 1;
+        if ((present & BONUS_POINTS_BALANCE) != 0) size += BinaryFormat.signedVarintSize(customer.getBonusPointsBalance());
+        if ((present & FINGERPRINT) != 0) size += Long.BYTES;
+        if ((present & ADDRESS) != 0) size += AddressCodec.encodedSize(customer.getAddress());
+        if ((present & APPLIED_SEQUENCE_NUMBER) != 0) size += BinaryFormat.varlongSize(customer.getAppliedSequenceNumber());
+        return size + ShoppingListCodec.encodedSizeOfAll(customer.getShoppingLists());
+    }
+
+    private static int presentFields(Customer customer) {
+        int present = 0;
+        if (customer.getInternalId() != null) present |= INTERNAL_ID;
+        if (customer.getExternalId() != null) present |= EXTERNAL_ID;
+        if (customer.getMasterExternalId() != null) present |= MASTER_EXTERNAL_ID;
+        if (customer.getCompanyNumber() != null) present |= COMPANY_NUMBER;
+        if (customer.getName() != null) present |= NAME;
+        if (customer.getPreferredStore() != null) present |= PREFERRED_STORE;
+        if (customer.getCustomerType() != null) present |= CUSTOMER_TYPE;
+        if (customer.getBonusPointsBalance() != null) present |= BONUS_POINTS_BALANCE;
+        if (customer.getFingerprint() != null) present |= FINGERPRINT;
+        if (customer.getAddress() != null) present |= ADDRESS;
+        if (customer.getAppliedSequenceNumber() != null) present |= APPLIED_SEQUENCE_NUMBER;
+        return present;
+    }
+}
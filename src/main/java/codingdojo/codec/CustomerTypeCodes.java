@@ -0,0 +1,27 @@
+package codingdojo.codec;
+
+import codingdojo.model.enums.CustomerType;
+
+/**
+ * Fixed one-byte codes for {@link CustomerType}, independent of the declaration order of the enum.
+ */
+final class CustomerTypeCodes {
+    private static final CustomerType[] BY_CODE = {null, CustomerType.PERSON, CustomerType.COMPANY};
+
+    private CustomerTypeCodes() {
+    }
+
+    static byte code(CustomerType customerType) {
+        return switch (customerType) {
+            case PERSON -> 1;
+            case COMPANY -> 2;
+        };
+    }
+
+    static CustomerType customerType(byte code) {
+        if (code <= 0 || code >= BY_CODE.length) {
+            throw new IllegalArgumentException("Unknown customer type code " + code);
+        }
+        return BY_CODE[code];
+    }
+}
@@ -0,0 +1,97 @@
+package codingdojo.codec;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.StringDictionary;
+
+/**
+ * Compact binary encoding of an {@link ExternalCustomer}, laid out like {@link CustomerCodec}: a format
+ * version byte, a varint bit set of the present fields, the present fields and the shopping lists.
+ * Version 2 added the sequence number, so version 1 data still decodes.
+ */
+public final class ExternalCustomerCodec {
+    public static final byte VERSION = 2;
+
+    private static final int EXTERNAL_ID = 1;
+    private static final int COMPANY_NUMBER = 1 << 1;
+    private static final int NAME = 1 << 2;
+    private static final int PREFERRED_STORE = 1 << 3;
+    private static final int BONUS_POINTS_BALANCE = 1 << 4;
+    private static final int ADDRESS = 1 << 5;
+    private static final int SEQUENCE_NUMBER = 1 << 6;
+
+    private ExternalCustomerCodec() {
+    }
+
+    public static void encode(ExternalCustomer externalCustomer, ByteBuffer buffer) {
+        int present = presentFields(externalCustomer);
+        buffer.put(VERSION);
+        BinaryFormat.putVarint(buffer, present);
+        if ((present & EXTERNAL_ID) != 0) BinaryFormat.putString(buffer, externalCustomer.getExternalId());
+        if ((present & COMPANY_NUMBER) != 0) BinaryFormat.putString(buffer, externalCustomer.getCompanyNumber());
+        if ((present & NAME) != 0) BinaryFormat.putString(buffer, externalCustomer.getName());
+        if ((present & PREFERRED_STORE) != 0) BinaryFormat.putString(buffer, externalCustomer.getPreferredStore());
+        if ((present & BONUS_POINTS_BALANCE) != 0) BinaryFormat.putSignedVarint(buffer, externalCustomer.getBonusPointsBalance());
+        if ((present & ADDRESS) != 0) AddressCodec.encode(externalCustomer.getAddress(), buffer);
+        if ((present & SEQUENCE_NUMBER) != 0) BinaryFormat.putVarlong(buffer, externalCustomer.getSequenceNumber());
+        ShoppingListCodec.encodeAll(externalCustomer.getShoppingLists(), buffer);
+    }
+
+    /**
+     * Decodes a record from the buffer's position, leaving the position after it.
+     *
+     * @throws IllegalArgumentException if the data was written by an unknown format version
+     */
+    public static ExternalCustomer decode(ByteBuffer buffer) {
+        return decode(buffer, StringDictionary.NONE);
+    }
+
+    /**
+     * Like {@link #decode(ByteBuffer)}, but shares the preferred store, city, postal code and products
+     * through the dictionary.
+     */
+    public static ExternalCustomer decode(ByteBuffer buffer, StringDictionary dictionary) {
+        byte version = buffer.get();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported external customer format version " + version);
+        }
+        int present = BinaryFormat.getVarint(buffer);
+        return ExternalCustomer.builder()
+            .externalId((present & EXTERNAL_ID) != 0 ? BinaryFormat.getString(buffer) : null)
+            .companyNumber((present & COMPANY_NUMBER) != 0 ? BinaryFormat.getString(buffer) : null)
+            .name((present & NAME) != 0 ? BinaryFormat.getString(buffer) : null)
+            .preferredStore((present & PREFERRED_STORE) != 0 ? dictionary.intern(BinaryFormat.getString(buffer)) : null)
+            .bonusPointsBalance((present & BONUS_POINTS_BALANCE) != 0 ? BinaryFormat.getSignedVarint(buffer) : null)
+            .address((present & ADDRESS) != 0 ? AddressCodec.decode(buffer, dictionary) : null)
+            .sequenceNumber((present & SEQUENCE_NUMBER) != 0 ? BinaryFormat.getVarlong(buffer) : null)
+            .shoppingLists(Arrays.asList(ShoppingListCodec.decodeAll(buffer, dictionary)))
+            .build();
+    }
+
+    public static int encodedSize(ExternalCustomer externalCustomer) {
+        int present = presentFields(externalCustomer);
+        int size = 1 + BinaryFormat.varintSize(present);
+        if ((present & EXTERNAL_ID) != 0) size += BinaryFormat.stringSize(externalCustomer.getExternalId());
+        if ((present & COMPANY_NUMBER) != 0) size += BinaryFormat.stringSize(externalCustomer.getCompanyNumber());
+        if ((present & NAME) != 0) size += BinaryFormat.stringSize(externalCustomer.getName());
+        if ((present & PREFERRED_STORE) != 0) size += BinaryFormat.stringSize(externalCustomer.getPreferredStore());
+        if ((present & BONUS_POINTS_BALANCE) != 0) size += BinaryFormat.signedVarintSize(externalCustomer.getBonusPointsBalance());
+        if ((present & ADDRESS) != 0) size += AddressCodec.encodedSize(externalCustomer.getAddress());
+        if ((present & SEQUENCE_NUMBER) != 0) size += BinaryFormat.varlongSize(externalCustomer.getSequenceNumber());
+        return size + ShoppingListCodec.encodedSizeOfAll(externalCustomer.getShoppingLists());
+    }
+
+    private static int presentFields(ExternalCustomer externalCustomer) {
+        int present = 0;
+        if (externalCustomer.getExternalId() != null) present |= EXTERNAL_ID;
+        if (externalCustomer.getCompanyNumber() != null) present |= COMPANY_NUMBER;
+        if (externalCustomer.getName() != null) present |= NAME;
+        if (externalCustomer.getPreferredStore() != null) present |= PREFERRED_STORE;
+        if (externalCustomer.getBonusPointsBalance() != null) present |= BONUS_POINTS_BALANCE;
+        if (externalCustomer.getAddress() != null) present |= ADDRESS;
+        if (externalCustomer.getSequenceNumber() != null) present |= SEQUENCE_NUMBER;
+        return present;
+    }
+}
@@ -0,0 +1,74 @@
+package codingdojo.codec;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import codingdojo.model.ShoppingList;
+import codingdojo.model.StringDictionary;
+
+/**
+ * Unversioned encoding of a {@link ShoppingList}, nested in the customer formats: the product count
+ * followed by the products.
+ */
+public final class ShoppingListCodec {
+
+    private ShoppingListCodec() {
+    }
+
+    public static void encode(ShoppingList shoppingList, ByteBuffer buffer) {
+        List<String> products = shoppingList.products();
+        BinaryFormat.putVarint(buffer, products.size());
+        for (String product : products) {
+            BinaryFormat.putString(buffer, product);
+        }
+    }
+
+    public static ShoppingList decode(ByteBuffer buffer) {
+        return decode(buffer, StringDictionary.NONE);
+    }
+
+    /**
+     * Decodes a shopping list with its products shared through the dictionary.
+     *
+     * @throws IllegalArgumentException if the product count can't fit in the rest of the buffer
+     */
+    public static ShoppingList decode(ByteBuffer buffer, StringDictionary dictionary) {
+        String[] products = new String[BinaryFormat.getCount(buffer, "products")];
+        for (int i = 0; i < products.length; i++) {
+            products[i] = dictionary.intern(BinaryFormat.getString(buffer));
+        }
+        return new ShoppingList(products);
+    }
+
+    public static int encodedSize(ShoppingList shoppingList) {
+        List<String> products = shoppingList.products();
+        int size = BinaryFormat.varintSize(products.size());
+        for (String product : products) {
+            size += BinaryFormat.stringSize(product);
+        }
+        return size;
+    }
+
+    static void encodeAll(List<ShoppingList> shoppingLists, ByteBuffer buffer) {
+        BinaryFormat.putVarint(buffer, shoppingLists.size());
+        for (ShoppingList shoppingList : shoppingLists) {
+            encode(shoppingList, buffer);
+        }
+    }
+
+    static ShoppingList[] decodeAll(ByteBuffer buffer, StringDictionary dictionary) {
+        ShoppingList[] shoppingLists = new ShoppingList[BinaryFormat.getCount(buffer, "shopping lists")];
+        for (int i = 0; i < shoppingLists.length; i++) {
+            shoppingLists[i] = decode(buffer, dictionary);
+        }
+        return shoppingLists;
+    }
+
+    static int encodedSizeOfAll(List<ShoppingList> shoppingLists) {
+        int size = BinaryFormat.varintSize(shoppingLists.size());
+        for (ShoppingList shoppingList : shoppingLists) {
+            size += encodedSize(shoppingList);
+        }
+        return size;
+    }
+}
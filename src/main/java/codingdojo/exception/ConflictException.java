@@ -1,7 +1,32 @@
 package codingdojo.exception;
 
+import codingdojo.model.enums.ConflictReason;
+
 public class ConflictException extends RuntimeException {
+    private final ConflictReason reason;
+
     public ConflictException(String s) {
-        super(s);
+        this(null, s, false);
+    }
+
+    public ConflictException(ConflictReason reason, String s) {
+        this(reason, s, false);
+    }
+
+    private ConflictException(ConflictReason reason, String s, boolean lightweight) {
+        super(s, null, !lightweight, !lightweight);
+        this.reason = reason;
+    }
+
+    /**
+     * Creates the exception without filling in a stack trace, which is most of its cost, and without
+     * suppressed exceptions. For callers that only look at the reason and message.
+     */
+    public static ConflictException stackless(ConflictReason reason, String s) {
+        return new ConflictException(reason, s, true);
+    }
+
+    public ConflictReason getReason() {
+        return reason;
     }
 }
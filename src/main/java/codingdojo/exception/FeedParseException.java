@@ -0,0 +1,11 @@
+package codingdojo.exception;
+
+public class FeedParseException extends RuntimeException {
+    public FeedParseException(long lineNumber, String s) {
+        super("Line " + lineNumber + ": " + s);
+    }
+
+    public FeedParseException(long lineNumber, String s, Throwable cause) {
+        super("Line " + lineNumber + ": " + s, cause);
+    }
+}
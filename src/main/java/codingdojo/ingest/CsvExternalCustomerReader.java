@@ -0,0 +1,165 @@
+package codingdojo.ingest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import codingdojo.exception.FeedParseException;
+import codingdojo.model.Address;
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.ShoppingList;
+import codingdojo.model.StringDictionary;
+
+/**
+ * Reads a CSV feed whose header names the columns, in any order:
+ * {@code externalId, companyNumber, name, preferredStore, street, city, postalCode, bonusPointsBalance, shoppingLists, sequenceNumber}.
+ * Shopping lists are separated by {@code |} and their products by {@code ;}. Fields may be quoted with
+ * {@code "}, doubling quotes inside; a quoted field can't span lines. Empty fields are {@code null}.
+ */
+public class CsvExternalCustomerReader implements ExternalCustomerReader {
+
+    private final BufferedReader reader;
+    private final StringDictionary dictionary;
+    private Map<String, Integer> columns;
+    private long lineNumber;
+
+    public CsvExternalCustomerReader(BufferedReader reader) {
+        this(reader, StringDictionary.NONE);
+    }
+
+    /**
+     * Shares stores, cities, postal codes and products of the records read through the dictionary.
+     */
+    public CsvExternalCustomerReader(BufferedReader reader, StringDictionary dictionary) {
+        this.reader = reader;
+        this.dictionary = dictionary;
+    }
+
+    public static CsvExternalCustomerReader open(Path feed) throws IOException {
+        return open(feed, StringDictionary.NONE);
+    }
+
+    public static CsvExternalCustomerReader open(Path feed, StringDictionary dictionary) throws IOException {
+        return new CsvExternalCustomerReader(Files.newBufferedReader(feed, StandardCharsets.UTF_8), dictionary);
+    }
+
+    @Override
+    public ExternalCustomer read() throws IOException {
+        if (columns == null) {
+            List<String> header = nextRecord();
+            if (header == null) {
+                return null;
+            }
+            columns = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).trim(), i);
+            }
+        }
+        List<String> fields = nextRecord();
+        if (fields == null) {
+            return null;
+        }
+        try {
+            return toExternalCustomer(fields);
+        } catch (NumberFormatException e) {
+            throw new FeedParseException(lineNumber, "Invalid number: " + e.getMessage(), e);
+        }
+    }
+
+    private ExternalCustomer toExternalCustomer(List<String> fields) {
+        String street = field(fields, "street");
+        String city = field(fields, "city");
+        String postalCode = field(fields, "postalCode");
+        String bonusPointsBalance = field(fields, "bonusPointsBalance");
+        String sequenceNumber = field(fields, "sequenceNumber");
+        return ExternalCustomer.builder()
+            .externalId(field(fields, "externalId"))
+            .companyNumber(field(fields, "companyNumber"))
+            .name(field(fields, "name"))
+            .preferredStore(dictionary.intern(field(fields, "preferredStore")))
+            .address(street == null && city == null && postalCode == null ? null
+                : new Address(street, dictionary.intern(city), dictionary.intern(postalCode)))
+            .bonusPointsBalance(bonusPointsBalance == null ? null : Integer.valueOf(bonusPointsBalance.trim()))
+            .shoppingLists(toShoppingLists(field(fields, "shoppingLists")))
+            .sequenceNumber(sequenceNumber == null ? null : Long.valueOf(sequenceNumber.trim()))
+            .build();
+    }
+
+    private String field(List<String> fields, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index);
+        return value.isEmpty() ? null : value;
+    }
+
+    private List<ShoppingList> toShoppingLists(String value) {
+        if (value == null) {
+            return List.of();
+        }
+        List<ShoppingList> shoppingLists = new ArrayList<>();
+        for (String shoppingList : value.split("\\|")) {
+            String[] products = shoppingList.split(";");
+            for (int i = 0; i < products.length; i++) {
+                products[i] = dictionary.intern(products[i]);
+            }
+            shoppingLists.add(new ShoppingList(products));
+        }
+        return shoppingLists;
+    }
+
+    private List<String> nextRecord() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+        } while (line.isBlank());
+        return split(line);
+    }
+
+    private List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new FeedParseException(lineNumber, "Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
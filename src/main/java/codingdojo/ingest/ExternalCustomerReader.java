@@ -0,0 +1,19 @@
+package codingdojo.ingest;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import codingdojo.model.ExternalCustomer;
+
+/**
+ * Streams {@link ExternalCustomer}s from a feed one record at a time.
+ */
+public interface ExternalCustomerReader extends Closeable {
+
+    /**
+     * Returns the next record, or {@code null} at the end of the feed.
+     *
+     * @throws codingdojo.exception.FeedParseException if the record is malformed
+     */
+    ExternalCustomer read() throws IOException;
+}
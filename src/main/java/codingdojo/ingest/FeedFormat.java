@@ -0,0 +1,18 @@
+package codingdojo.ingest;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import codingdojo.model.StringDictionary;
+
+public enum FeedFormat {
+    NDJSON, CSV;
+
+    public ExternalCustomerReader open(Path feed) throws IOException {
+        return open(feed, StringDictionary.NONE);
+    }
+
+    public ExternalCustomerReader open(Path feed, StringDictionary dictionary) throws IOException {
+        return this == NDJSON ? NdjsonExternalCustomerReader.open(feed, dictionary) : CsvExternalCustomerReader.open(feed, dictionary);
+    }
+}
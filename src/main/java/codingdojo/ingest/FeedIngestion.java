@@ -0,0 +1,142 @@
+package codingdojo.ingest;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.SyncSummary;
+import codingdojo.service.CustomerSync;
+
+/**
+ * Streams a feed file into {@link CustomerSync}.
+ * <p>
+ * A parser thread reads records into a bounded queue while the calling thread takes them off in
+ * chunks and syncs each chunk with {@link CustomerSync#syncBatch(List)}, so matching and writing
+ * overlap with parsing. Memory stays bounded by the queue capacity and batch size, whatever the
+ * size of the feed, and the returned summary only keeps the results of conflicts.
+ * <p>
+ * Parsing and syncing are the only two stages. Matching and writing are not split into stages of
+ * their own: syncBatch already looks up a whole chunk with one query per index and writes its
+ * updates in one bulk call, which removes the per-record round trips that separate stages would
+ * overlap. To overlap lookups and writes record by record instead, sync through
+ * {@link codingdojo.service.PipelinedCustomerSync}.
+ */
+public class FeedIngestion {
+    public static final int DEFAULT_QUEUE_CAPACITY = 2_000;
+
+    private static final ExternalCustomer END_OF_FEED = ExternalCustomer.builder().build();
+
+    private final CustomerSync customerSync;
+    private final int queueCapacity;
+    private final int batchSize;
+
+    public FeedIngestion(CustomerSync customerSync) {
+        this(customerSync, DEFAULT_QUEUE_CAPACITY, CustomerSync.DEFAULT_BATCH_SIZE);
+    }
+
+    public FeedIngestion(CustomerSync customerSync, int queueCapacity, int batchSize) {
+        if (queueCapacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("queueCapacity and batchSize must be positive");
+        }
+        this.customerSync = customerSync;
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+    }
+
+    public SyncSummary ingest(Path feed, FeedFormat format) throws IOException {
+        try (ExternalCustomerReader reader = format.open(feed)) {
+            return ingest(reader);
+        }
+    }
+
+    /**
+     * Syncs every record of the reader. A malformed record stops the ingestion and its
+     * {@link codingdojo.exception.FeedParseException} is rethrown here; records synced before it stay synced.
+     */
+    public SyncSummary ingest(ExternalCustomerReader reader) throws IOException {
+        BlockingQueue<ExternalCustomer> queue = new ArrayBlockingQueue<>(queueCapacity);
+        Parser parser = new Parser(reader, queue);
+        Thread parserThread = new Thread(parser, "feed-parser");
+        parserThread.setDaemon(true);
+        parserThread.start();
+
+        SyncSummary summary = SyncSummary.conflictsOnly();
+        List<ExternalCustomer> chunk = new ArrayList<>(batchSize);
+        boolean finished = false;
+        try {
+            while (!finished) {
+                chunk.add(queue.take());
+                queue.drainTo(chunk, batchSize - chunk.size());
+                if (chunk.get(chunk.size() - 1) == END_OF_FEED) {
+                    chunk.remove(chunk.size() - 1);
+                    finished = true;
+                }
+                if (!chunk.isEmpty()) {
+                    summary.addAll(customerSync.syncBatch(chunk));
+                    chunk.clear();
+                }
+            }
+            parserThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while ingesting feed", e);
+        } finally {
+            parserThread.interrupt();
+        }
+        parser.rethrowFailure();
+        return summary;
+    }
+
+    private static final class Parser implements Runnable {
+        private final ExternalCustomerReader reader;
+        private final BlockingQueue<ExternalCustomer> queue;
+        private volatile Throwable failure;
+
+        Parser(ExternalCustomerReader reader, BlockingQueue<ExternalCustomer> queue) {
+            this.reader = reader;
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            try {
+                ExternalCustomer externalCustomer;
+                while ((externalCustomer = reader.read()) != null) {
+                    queue.put(externalCustomer);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                endOfFeed();
+            }
+        }
+
+        // queued however reading ended, or ingest() would wait for it forever; once interrupted,
+        // ingest() has already stopped taking records and the put gives up right away
+        private void endOfFeed() {
+            try {
+                queue.put(END_OF_FEED);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void rethrowFailure() throws IOException {
+            if (failure instanceof IOException e) {
+                throw e;
+            }
+            if (failure instanceof RuntimeException e) {
+                throw e;
+            }
+            if (failure instanceof Error e) {
+                throw e;
+            }
+        }
+    }
+}
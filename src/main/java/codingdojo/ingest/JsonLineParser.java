@@ -0,0 +1,205 @@
+package codingdojo.ingest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON parser for a single NDJSON line. Objects become {@link Map}s, arrays {@link List}s,
+ * numbers {@link Long} or {@link Double}. Throws {@link IllegalArgumentException} on malformed input.
+ */
+final class JsonLineParser {
+    private final String json;
+    private int position;
+
+    private JsonLineParser(String json) {
+        this.json = json;
+    }
+
+    static Object parse(String json) {
+        JsonLineParser parser = new JsonLineParser(json);
+        Object value = parser.readValue();
+        parser.skipWhitespace();
+        if (parser.position != json.length()) {
+            throw parser.error("Unexpected trailing content");
+        }
+        return value;
+    }
+
+    private Object readValue() {
+        skipWhitespace();
+        if (position >= json.length()) {
+            throw error("Unexpected end of input");
+        }
+        char c = json.charAt(position);
+        switch (c) {
+            case '{':
+                return readObject();
+            case '[':
+                return readArray();
+            case '"':
+                return readString();
+            case 't':
+                return readLiteral("true", Boolean.TRUE);
+            case 'f':
+                return readLiteral("false", Boolean.FALSE);
+            case 'n':
+                return readLiteral("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return readNumber();
+                }
+                throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> readObject() {
+        Map<String, Object> object = new LinkedHashMap<>();
+        position++;
+        skipWhitespace();
+        if (peek() == '}') {
+            position++;
+            return object;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') {
+                throw error("Expected field name");
+            }
+            String name = readString();
+            skipWhitespace();
+            expect(':');
+            object.put(name, readValue());
+            skipWhitespace();
+            if (peek() == ',') {
+                position++;
+            } else {
+                expect('}');
+                return object;
+            }
+        }
+    }
+
+    private List<Object> readArray() {
+        List<Object> array = new ArrayList<>();
+        position++;
+        skipWhitespace();
+        if (peek() == ']') {
+            position++;
+            return array;
+        }
+        while (true) {
+            array.add(readValue());
+            skipWhitespace();
+            if (peek() == ',') {
+                position++;
+            } else {
+                expect(']');
+                return array;
+            }
+        }
+    }
+
+    private String readString() {
+        position++;
+        StringBuilder value = null;
+        int start = position;
+        while (true) {
+            if (position >= json.length()) {
+                throw error("Unterminated string");
+            }
+            char c = json.charAt(position);
+            if (c == '"') {
+                String tail = json.substring(start, position++);
+                return value == null ? tail : value.append(tail).toString();
+            }
+            if (c == '\\') {
+                if (value == null) {
+                    value = new StringBuilder();
+                }
+                value.append(json, start, position);
+                value.append(readEscape());
+                start = position;
+            } else {
+                position++;
+            }
+        }
+    }
+
+    private char readEscape() {
+        position++;
+        if (position >= json.length()) {
+            throw error("Unterminated escape");
+        }
+        char c = json.charAt(position++);
+        switch (c) {
+            case '"': return '"';
+            case '\\': return '\\';
+            case '/': return '/';
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            case 'u':
+                if (position + 4 > json.length()) {
+                    throw error("Truncated unicode escape");
+                }
+                char decoded = (char) Integer.parseInt(json.substring(position, position + 4), 16);
+                position += 4;
+                return decoded;
+            default:
+                throw error("Invalid escape '\\" + c + "'");
+        }
+    }
+
+    private Object readNumber() {
+        int start = position;
+        boolean integral = true;
+        while (position < json.length()) {
+            char c = json.charAt(position);
+            if (c == '.' || c == 'e' || c == 'E') {
+                integral = false;
+            } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                break;
+            }
+            position++;
+        }
+        String number = json.substring(start, position);
+        try {
+            return integral ? (Object) Long.parseLong(number) : (Object) Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            throw error("Invalid number '" + number + "'");
+        }
+    }
+
+    private Object readLiteral(String literal, Object value) {
+        if (!json.startsWith(literal, position)) {
+            throw error("Unexpected token");
+        }
+        position += literal.length();
+        return value;
+    }
+
+    private void expect(char expected) {
+        if (peek() != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+        position++;
+    }
+
+    private char peek() {
+        return position < json.length() ? json.charAt(position) : '\0';
+    }
+
+    private void skipWhitespace() {
+        while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at column " + (position + 1));
+    }
+}
@@ -0,0 +1,130 @@
+package codingdojo.ingest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import codingdojo.exception.FeedParseException;
+import codingdojo.model.Address;
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.ShoppingList;
+import codingdojo.model.StringDictionary;
+
+/**
+ * Reads one JSON object per line, e.g.
+ * <pre>
+ * {"externalId":"12345","companyNumber":"470813-8895","name":"Acme Inc.","preferredStore":"Nordstan",
+ *  "address":{"street":"123 main st","city":"Helsingborg","postalCode":"SE-123 45"},
+ *  "bonusPointsBalance":25,"shoppingLists":[["lipstick","blusher"]],"sequenceNumber":1042}
+ * </pre>
+ * Missing fields are {@code null}, unknown fields are ignored and blank lines are skipped.
+ */
+public class NdjsonExternalCustomerReader implements ExternalCustomerReader {
+
+    private final BufferedReader reader;
+    private final StringDictionary dictionary;
+    private long lineNumber;
+
+    public NdjsonExternalCustomerReader(BufferedReader reader) {
+        this(reader, StringDictionary.NONE);
+    }
+
+    /**
+     * Shares stores, cities, postal codes and products of the records read through the dictionary.
+     */
+    public NdjsonExternalCustomerReader(BufferedReader reader, StringDictionary dictionary) {
+        this.reader = reader;
+        this.dictionary = dictionary;
+    }
+
+    public static NdjsonExternalCustomerReader open(Path feed) throws IOException {
+        return open(feed, StringDictionary.NONE);
+    }
+
+    public static NdjsonExternalCustomerReader open(Path feed, StringDictionary dictionary) throws IOException {
+        return new NdjsonExternalCustomerReader(Files.newBufferedReader(feed, StandardCharsets.UTF_8), dictionary);
+    }
+
+    @Override
+    public ExternalCustomer read() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+        } while (line.isBlank());
+
+        try {
+            if (!(JsonLineParser.parse(line) instanceof Map<?, ?> json)) {
+                throw new FeedParseException(lineNumber, "Expected a JSON object");
+            }
+            return toExternalCustomer(json);
+        } catch (IllegalArgumentException | ClassCastException e) {
+            throw new FeedParseException(lineNumber, e.getMessage(), e);
+        }
+    }
+
+    private ExternalCustomer toExternalCustomer(Map<?, ?> json) {
+        return ExternalCustomer.builder()
+            .externalId((String) json.get("externalId"))
+            .companyNumber((String) json.get("companyNumber"))
+            .name((String) json.get("name"))
+            .preferredStore(dictionary.intern((String) json.get("preferredStore")))
+            .address(toAddress((Map<?, ?>) json.get("address")))
+            .bonusPointsBalance(toInteger("bonusPointsBalance", (Number) json.get("bonusPointsBalance")))
+            .shoppingLists(toShoppingLists((List<?>) json.get("shoppingLists")))
+            .sequenceNumber(toLong("sequenceNumber", (Number) json.get("sequenceNumber")))
+            .build();
+    }
+
+    private Address toAddress(Map<?, ?> json) {
+        if (json == null) {
+            return null;
+        }
+        return new Address((String) json.get("street"),
+            dictionary.intern((String) json.get("city")), dictionary.intern((String) json.get("postalCode")));
+    }
+
+    // reported as IllegalArgumentException, which read() turns into a FeedParseException for the line
+    private static Integer toInteger(String field, Number number) {
+        Long value = toLong(field, number);
+        if (value != null && (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)) {
+            throw new IllegalArgumentException(field + " out of range: " + value);
+        }
+        return value == null ? null : value.intValue();
+    }
+
+    private static Long toLong(String field, Number number) {
+        if (number != null && !(number instanceof Long)) {
+            throw new IllegalArgumentException(field + " is not a whole number: " + number);
+        }
+        return (Long) number;
+    }
+
+    private List<ShoppingList> toShoppingLists(List<?> json) {
+        if (json == null) {
+            return List.of();
+        }
+        List<ShoppingList> shoppingLists = new ArrayList<>(json.size());
+        for (Object products : json) {
+            List<String> productNames = new ArrayList<>();
+            for (Object product : (List<?>) products) {
+                productNames.add(dictionary.intern((String) product));
+            }
+            shoppingLists.add(new ShoppingList(List.copyOf(productNames)));
+        }
+        return shoppingLists;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
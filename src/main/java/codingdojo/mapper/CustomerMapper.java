@@ -1,9 +1,17 @@
 package codingdojo.mapper;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import codingdojo.model.Customer;
+import codingdojo.model.CustomerChanges;
 import codingdojo.model.ExternalCustomer;
+import codingdojo.model.ShoppingList;
+import codingdojo.model.enums.CustomerField;
 import codingdojo.model.enums.CustomerType;
 
 public class CustomerMapper {
@@ -16,36 +24,67 @@ public class CustomerMapper {
     }
 
     public Customer toDuplicateCustomer(ExternalCustomer externalCustomer, Customer customer) {
+        return toDuplicateChanges(externalCustomer, customer).getCustomer();
+    }
+
+    public CustomerChanges toDuplicateChanges(ExternalCustomer externalCustomer, Customer customer) {
         if (customer == null) {
             customer = toNewCustomer(externalCustomer);
         }
-        customer.setName(externalCustomer.getName());
-        return customer;
+        CustomerChanges changes = new CustomerChanges(customer);
+        update(changes, CustomerField.NAME, customer.getName(), externalCustomer.getName(), customer::setName);
+        return changes;
     }
 
     public Customer toCustomerWithExternalData(ExternalCustomer externalCustomer, Customer customer) {
+        return toCustomerChanges(externalCustomer, customer).getCustomer();
+    }
+
+    /**
+     * Merges the external data into the customer, recording which fields actually changed.
+     */
+    public CustomerChanges toCustomerChanges(ExternalCustomer externalCustomer, Customer customer) {
         if (customer == null) {
             customer = toNewCustomer(externalCustomer);
         }
-        customer.setName(externalCustomer.getName());
-        customer.setPreferredStore(externalCustomer.getPreferredStore());
-        customer.setAddress(externalCustomer.getAddress());
-        customer.addShoppingLists(externalCustomer.getShoppingLists());
+        CustomerChanges changes = new CustomerChanges(customer);
+        update(changes, CustomerField.NAME, customer.getName(), externalCustomer.getName(), customer::setName);
+        update(changes, CustomerField.PREFERRED_STORE, customer.getPreferredStore(), externalCustomer.getPreferredStore(), customer::setPreferredStore);
+        update(changes, CustomerField.ADDRESS, customer.getAddress(), externalCustomer.getAddress(), customer::setAddress);
+        List<ShoppingList> newShoppingLists = newShoppingLists(externalCustomer, customer);
+        customer.addShoppingLists(newShoppingLists);
+        changes.addShoppingLists(newShoppingLists);
 
         if (externalCustomer.isCompany()) {
-            customer.setCompanyNumber(externalCustomer.getCompanyNumber());
-            customer.setCustomerType(CustomerType.COMPANY);
+            update(changes, CustomerField.COMPANY_NUMBER, customer.getCompanyNumber(), externalCustomer.getCompanyNumber(), customer::setCompanyNumber);
+            update(changes, CustomerField.CUSTOMER_TYPE, customer.getCustomerType(), CustomerType.COMPANY, customer::setCustomerType);
         } else {
-            if (toUpdateBonusPointsBalance(externalCustomer, customer)) {
-                customer.setBonusPointsBalance(externalCustomer.getBonusPointsBalance());
+            update(changes, CustomerField.BONUS_POINTS_BALANCE, customer.getBonusPointsBalance(), externalCustomer.getBonusPointsBalance(), customer::setBonusPointsBalance);
+            update(changes, CustomerField.CUSTOMER_TYPE, customer.getCustomerType(), CustomerType.PERSON, customer::setCustomerType);
+        }
+        return changes;
+    }
+
+    // lists are compared by content, so a re-delivered list is neither appended nor written again
+    private static List<ShoppingList> newShoppingLists(ExternalCustomer externalCustomer, Customer customer) {
+        List<ShoppingList> delivered = externalCustomer.getShoppingLists();
+        if (delivered.isEmpty()) {
+            return List.of();
+        }
+        Set<ShoppingList> known = new HashSet<>(customer.getShoppingLists());
+        List<ShoppingList> added = new ArrayList<>(delivered.size());
+        for (ShoppingList shoppingList : delivered) {
+            if (known.add(shoppingList)) {
+                added.add(shoppingList);
             }
-            customer.setCustomerType(CustomerType.PERSON);
         }
-        return customer;
+        return added;
     }
 
-    private boolean toUpdateBonusPointsBalance(ExternalCustomer externalCustomer, Customer customer) {
-        return customer.getBonusPointsBalance() == null ||
-            !Objects.equals(customer.getBonusPointsBalance(), externalCustomer.getBonusPointsBalance());
+    private static <T> void update(CustomerChanges changes, CustomerField field, T current, T value, Consumer<T> setter) {
+        if (!Objects.equals(current, value)) {
+            setter.accept(value);
+            changes.markChanged(field);
+        }
     }
 }
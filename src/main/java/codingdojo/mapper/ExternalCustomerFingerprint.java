@@ -0,0 +1,45 @@
+package codingdojo.mapper;
+
+import codingdojo.model.Address;
+import codingdojo.model.ContentHasher;
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.ShoppingList;
+
+/**
+ * Stable 64-bit fingerprint over every field of an {@link ExternalCustomer}, including address and
+ * shopping lists. Two deliveries with the same fingerprint carry the same data. The sequence number
+ * is left out, as it tells when the data changed rather than what it is.
+ */
+public final class ExternalCustomerFingerprint {
+
+    private ExternalCustomerFingerprint() {
+    }
+
+    public static long of(ExternalCustomer externalCustomer) {
+        ContentHasher hasher = new ContentHasher()
+            .putString(externalCustomer.getExternalId())
+            .putString(externalCustomer.getCompanyNumber())
+            .putString(externalCustomer.getName())
+            .putString(externalCustomer.getPreferredStore());
+        Address address = externalCustomer.getAddress();
+        if (address == null) {
+            hasher.putInt(-1);
+        } else {
+            hasher.putInt(1)
+                .putString(address.street())
+                .putString(address.city())
+                .putString(address.postalCode());
+        }
+        Integer bonusPointsBalance = externalCustomer.getBonusPointsBalance();
+        if (bonusPointsBalance == null) {
+            hasher.putInt(-1);
+        } else {
+            hasher.putInt(1).putInt(bonusPointsBalance);
+        }
+        hasher.putInt(externalCustomer.getShoppingLists().size());
+        for (ShoppingList shoppingList : externalCustomer.getShoppingLists()) {
+            hasher.putLong(shoppingList.contentHash());
+        }
+        return hasher.hash();
+    }
+}
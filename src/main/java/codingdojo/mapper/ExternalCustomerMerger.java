@@ -0,0 +1,94 @@
+package codingdojo.mapper;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.ShoppingList;
+
+/**
+ * Merges deliveries for the same customer into one, so that a burst of updates is synced once.
+ * <p>
+ * Deliveries are folded oldest first: by sequence number, where a delivery without one counts as
+ * newer than the ones that arrived before it. A later delivery's fields win where it carries them,
+ * since deliveries leave out what they don't know; the shopping lists are the union of all of them,
+ * earlier ones first. All deliveries must be at hand: folding pairs as they arrive would let a field
+ * carried forward from an old delivery win over a newer one that arrives out of order.
+ */
+public final class ExternalCustomerMerger {
+
+    private ExternalCustomerMerger() {
+    }
+
+    public static ExternalCustomer merge(ExternalCustomer first, ExternalCustomer second) {
+        return mergeAll(List.of(first, second));
+    }
+
+    /**
+     * Merges the deliveries, given in arrival order.
+     */
+    public static ExternalCustomer mergeAll(List<ExternalCustomer> deliveries) {
+        if (deliveries.size() == 1) {
+            return deliveries.get(0);
+        }
+        ExternalCustomer merged = null;
+        for (ExternalCustomer later : oldestFirst(deliveries)) {
+            merged = merged == null ? later : merge(merged, later, union(merged.getShoppingLists(), later.getShoppingLists()));
+        }
+        return merged;
+    }
+
+    private static List<ExternalCustomer> oldestFirst(List<ExternalCustomer> deliveries) {
+        long[] order = new long[deliveries.size()];
+        long latestSoFar = Long.MIN_VALUE;
+        for (int i = 0; i < order.length; i++) {
+            Long sequenceNumber = deliveries.get(i).getSequenceNumber();
+            order[i] = sequenceNumber != null ? sequenceNumber : latestSoFar;
+            latestSoFar = Math.max(latestSoFar, order[i]);
+        }
+        List<Integer> indexes = new ArrayList<>(order.length);
+        for (int i = 0; i < order.length; i++) {
+            indexes.add(i);
+        }
+        // stable, so deliveries that tie stay in arrival order
+        indexes.sort(Comparator.comparingLong(i -> order[i]));
+        List<ExternalCustomer> sorted = new ArrayList<>(order.length);
+        for (int i : indexes) {
+            sorted.add(deliveries.get(i));
+        }
+        return sorted;
+    }
+
+    private static ExternalCustomer merge(ExternalCustomer earlier, ExternalCustomer later, List<ShoppingList> shoppingLists) {
+        return ExternalCustomer.builder()
+            .externalId(latest(earlier.getExternalId(), later.getExternalId()))
+            .companyNumber(latest(earlier.getCompanyNumber(), later.getCompanyNumber()))
+            .name(latest(earlier.getName(), later.getName()))
+            .preferredStore(latest(earlier.getPreferredStore(), later.getPreferredStore()))
+            .address(latest(earlier.getAddress(), later.getAddress()))
+            .bonusPointsBalance(latest(earlier.getBonusPointsBalance(), later.getBonusPointsBalance()))
+            .sequenceNumber(max(earlier.getSequenceNumber(), later.getSequenceNumber()))
+            .shoppingLists(shoppingLists)
+            .build();
+    }
+
+    private static <T> T latest(T earlier, T later) {
+        return later != null ? later : earlier;
+    }
+
+    private static Long max(Long earlier, Long later) {
+        return earlier == null ? later : later == null ? earlier : Long.valueOf(Math.max(earlier, later));
+    }
+
+    private static List<ShoppingList> union(List<ShoppingList> earlier, List<ShoppingList> later) {
+        if (later.isEmpty()) {
+            return new ArrayList<>(earlier);
+        }
+        Set<ShoppingList> union = new LinkedHashSet<>(earlier);
+        union.addAll(later);
+        return new ArrayList<>(union);
+    }
+}
@@ -0,0 +1,12 @@
+package codingdojo.metrics;
+
+public interface Counter {
+
+    default void increment() {
+        increment(1);
+    }
+
+    void increment(long amount);
+
+    long count();
+}
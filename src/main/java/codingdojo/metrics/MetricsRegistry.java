@@ -0,0 +1,15 @@
+package codingdojo.metrics;
+
+/**
+ * Hands out named meters. Tags are given as alternating keys and values, e.g.
+ * {@code counter("customer.sync.outcome", "outcome", "created")}. Asking twice for the same name and
+ * tags returns the same meter, so callers resolve their meters once and keep them.
+ */
+public interface MetricsRegistry {
+
+    MetricsRegistry NOOP = new NoopMetricsRegistry();
+
+    Counter counter(String name, String... tags);
+
+    Timer timer(String name, String... tags);
+}
@@ -0,0 +1,153 @@
+package codingdojo.metrics;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process registry with lock-free counters and log-linear latency histograms, for exporting
+ * or logging from the application. Meters are keyed by {@code name{key=value,...}}.
+ */
+public class SimpleMetricsRegistry implements MetricsRegistry {
+
+    private final Map<String, SimpleCounter> counters = new ConcurrentHashMap<>();
+    private final Map<String, HistogramTimer> timers = new ConcurrentHashMap<>();
+
+    @Override
+    public Counter counter(String name, String... tags) {
+        return counters.computeIfAbsent(id(name, tags), id -> new SimpleCounter());
+    }
+
+    @Override
+    public Timer timer(String name, String... tags) {
+        return timers.computeIfAbsent(id(name, tags), id -> new HistogramTimer());
+    }
+
+    public SortedMap<String, Counter> getCounters() {
+        return new TreeMap<>(counters);
+    }
+
+    public SortedMap<String, Timer> getTimers() {
+        return new TreeMap<>(timers);
+    }
+
+    static String id(String name, String... tags) {
+        if (tags.length % 2 != 0) {
+            throw new IllegalArgumentException("Tags must be key/value pairs: " + String.join(",", tags));
+        }
+        if (tags.length == 0) {
+            return name;
+        }
+        StringBuilder id = new StringBuilder(name).append('{');
+        for (int i = 0; i < tags.length; i += 2) {
+            if (i > 0) id.append(',');
+            id.append(tags[i]).append('=').append(tags[i + 1]);
+        }
+        return id.append('}').toString();
+    }
+
+    private static final class SimpleCounter implements Counter {
+        private final LongAdder count = new LongAdder();
+
+        @Override
+        public void increment(long amount) {
+            count.add(amount);
+        }
+
+        @Override
+        public long count() {
+            return count.sum();
+        }
+
+        @Override
+        public String toString() {
+            return Long.toString(count());
+        }
+    }
+
+    /**
+     * Buckets durations by their highest set bit and the three bits below it, i.e. eight linear
+     * sub-buckets per power of two.
+     */
+    private static final class HistogramTimer implements Timer {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        @Override
+        public void record(long durationNanos) {
+            long duration = Math.max(durationNanos, 0);
+            buckets.incrementAndGet(bucket(duration));
+            count.increment();
+            total.add(duration);
+            max.accumulate(duration);
+        }
+
+        private static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long subBucket = bucket % SUB_BUCKETS;
+            return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+
+        @Override
+        public long count() {
+            return count.sum();
+        }
+
+        @Override
+        public long totalTimeNanos() {
+            return total.sum();
+        }
+
+        @Override
+        public long maxNanos() {
+            return max.get();
+        }
+
+        @Override
+        public long percentileNanos(double percentile) {
+            long recorded = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                recorded += buckets.get(i);
+            }
+            if (recorded == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile * recorded));
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), maxNanos());
+                }
+            }
+            return maxNanos();
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count() + " total=" + totalTimeNanos() + "ns p50=" + percentileNanos(0.5)
+                + "ns p99=" + percentileNanos(0.99) + "ns max=" + maxNanos() + "ns";
+        }
+    }
+}
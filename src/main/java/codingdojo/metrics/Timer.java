@@ -0,0 +1,40 @@
+package codingdojo.metrics;
+
+import java.util.function.Supplier;
+
+/**
+ * Records durations into a latency histogram.
+ */
+public interface Timer {
+
+    void record(long durationNanos);
+
+    default <T> T record(Supplier<T> operation) {
+        long start = System.nanoTime();
+        try {
+            return operation.get();
+        } finally {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    default void record(Runnable operation) {
+        long start = System.nanoTime();
+        try {
+            operation.run();
+        } finally {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    long count();
+
+    long totalTimeNanos();
+
+    long maxNanos();
+
+    /**
+     * Returns an upper bound of the given percentile, in {@code [0, 1]}, accurate to within 12.5%.
+     */
+    long percentileNanos(double percentile);
+}
@@ -0,0 +1,87 @@
+package codingdojo.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Growable array that only supports appends, handing out immutable snapshots without copying.
+ * <p>
+ * Slots below {@code size} are never written again, so a snapshot can share the backing array and stay
+ * unchanged while later elements are appended behind it. The snapshot is cached until the next append.
+ */
+final class AppendOnlyList<E> {
+    private static final Object[] EMPTY = {};
+
+    private Object[] elements;
+    private int size;
+    private List<E> snapshot;
+
+    AppendOnlyList() {
+        this.elements = EMPTY;
+    }
+
+    AppendOnlyList(Collection<? extends E> initial) {
+        this.elements = initial.toArray();
+        this.size = elements.length;
+    }
+
+    void add(E element) {
+        ensureCapacity(size + 1);
+        elements[size++] = element;
+        snapshot = null;
+    }
+
+    void addAll(Collection<? extends E> additions) {
+        if (additions.isEmpty()) {
+            return;
+        }
+        ensureCapacity(size + additions.size());
+        for (E element : additions) {
+            elements[size++] = element;
+        }
+        snapshot = null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    List<E> snapshot() {
+        if (snapshot == null) {
+            snapshot = new Snapshot<>(elements, size);
+        }
+        return snapshot;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > elements.length) {
+            elements = Arrays.copyOf(elements, Math.max(required, elements.length + (elements.length >> 1) + 4));
+        }
+    }
+
+    private static final class Snapshot<E> extends AbstractList<E> implements RandomAccess {
+        private final Object[] elements;
+        private final int size;
+
+        Snapshot(Object[] elements, int size) {
+            this.elements = elements;
+            this.size = size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E get(int index) {
+            Objects.checkIndex(index, size);
+            return (E) elements[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package codingdojo.model;
+
+/**
+ * Streaming 64-bit content hash: FNV-1a over the fed values, finished with the murmur3 fmix64 step.
+ * Strings are length-prefixed and {@code null} gets a marker of its own, so adjacent fields can't
+ * run into each other. Not cryptographic; meant for change detection, deduplication and, through
+ * {@link #hashKey}, the key hashes of the Bloom filter, the mapped indexes and the shard ring.
+ */
+public final class ContentHasher {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private long hash = FNV_OFFSET_BASIS;
+
+    /**
+     * Hashes a single lookup key. Unlike {@link #putString} the chars are fed without a length prefix.
+     */
+    public static long hashKey(String key) {
+        ContentHasher hasher = new ContentHasher();
+        for (int i = 0; i < key.length(); i++) {
+            hasher.mix(key.charAt(i));
+        }
+        return hasher.hash();
+    }
+
+    public ContentHasher putString(String value) {
+        if (value == null) {
+            return putInt(-1);
+        }
+        putInt(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            mix(value.charAt(i));
+        }
+        return this;
+    }
+
+    public ContentHasher putInt(int value) {
+        mix(value & 0xffff);
+        mix(value >>> 16);
+        return this;
+    }
+
+    public ContentHasher putLong(long value) {
+        putInt((int) value);
+        return putInt((int) (value >>> 32));
+    }
+
+    public long hash() {
+        long h = hash;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private void mix(int value) {
+        hash ^= value;
+        hash *= FNV_PRIME;
+    }
+}
@@ -1,16 +1,14 @@
 package codingdojo.model;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import codingdojo.model.enums.CustomerType;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 
-@Builder
 @Getter
 @Setter
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
@@ -23,26 +21,61 @@ public class Customer {
     private String companyNumber;
     private Address address;
     private String preferredStore;
-    @Builder.Default()
-    private List<ShoppingList> shoppingLists = new ArrayList<>();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private AppendOnlyList<ShoppingList> shoppingLists;
     private String internalId;
     private String name;
     private CustomerType customerType;
     private Integer bonusPointsBalance;
+    private Long fingerprint;
+    /**
+     * Sequence number of the last external record applied to this customer.
+     */
+    private Long appliedSequenceNumber;
 
+    @Builder
+    private Customer(String externalId, String masterExternalId, String companyNumber, Address address,
+                     String preferredStore, List<ShoppingList> shoppingLists, String internalId, String name,
+                     CustomerType customerType, Integer bonusPointsBalance, Long fingerprint, Long appliedSequenceNumber) {
+        this.externalId = externalId;
+        this.masterExternalId = masterExternalId;
+        this.companyNumber = companyNumber;
+        this.address = address;
+        this.preferredStore = preferredStore;
+        this.shoppingLists = shoppingLists == null ? new AppendOnlyList<>() : new AppendOnlyList<>(shoppingLists);
+        this.internalId = internalId;
+        this.name = name;
+        this.customerType = customerType;
+        this.bonusPointsBalance = bonusPointsBalance;
+        this.fingerprint = fingerprint;
+        this.appliedSequenceNumber = appliedSequenceNumber;
+    }
+
+    /**
+     * Returns an independent copy; changes to either one, including added shopping lists, don't show up in the other.
+     */
+    public Customer copy() {
+        return new Customer(externalId, masterExternalId, companyNumber, address, preferredStore, getShoppingLists(),
+            internalId, name, customerType, bonusPointsBalance, fingerprint, appliedSequenceNumber);
+    }
+
+    /**
+     * Returns an immutable snapshot; lists added later don't show up in it.
+     */
     public List<ShoppingList> getShoppingLists() {
-        return Collections.unmodifiableList(shoppingLists);
+        return shoppingLists.snapshot();
+    }
+
+    public void setShoppingLists(List<ShoppingList> shoppingLists) {
+        this.shoppingLists = shoppingLists == null ? new AppendOnlyList<>() : new AppendOnlyList<>(shoppingLists);
     }
 
     public void addShoppingList(ShoppingList consumerShoppingList) {
-        ArrayList<ShoppingList> newList = new ArrayList<>(this.shoppingLists);
-        newList.add(consumerShoppingList);
-        this.setShoppingLists(newList);
+        shoppingLists.add(consumerShoppingList);
     }
 
     public void addShoppingLists(List<ShoppingList> consumerShoppingLists) {
-        ArrayList<ShoppingList> newList = new ArrayList<>(this.shoppingLists);
-        newList.addAll(consumerShoppingLists);
-        this.setShoppingLists(newList);
+        shoppingLists.addAll(consumerShoppingLists);
     }
 }
@@ -0,0 +1,51 @@
+package codingdojo.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import codingdojo.model.enums.CustomerField;
+import lombok.Getter;
+
+/**
+ * A customer after mapping, together with the fields the mapping actually changed.
+ */
+@Getter
+public class CustomerChanges {
+    private final Customer customer;
+    private final Set<CustomerField> changedFields = EnumSet.noneOf(CustomerField.class);
+    private final List<ShoppingList> addedShoppingLists = new ArrayList<>();
+
+    public CustomerChanges(Customer customer) {
+        this.customer = customer;
+    }
+
+    public void markChanged(CustomerField field) {
+        changedFields.add(field);
+    }
+
+    public void addShoppingLists(List<ShoppingList> shoppingLists) {
+        if (!shoppingLists.isEmpty()) {
+            addedShoppingLists.addAll(shoppingLists);
+            markChanged(CustomerField.SHOPPING_LISTS);
+        }
+    }
+
+    public boolean isChanged(CustomerField field) {
+        return changedFields.contains(field);
+    }
+
+    public boolean isEmpty() {
+        return changedFields.isEmpty();
+    }
+
+    public Set<CustomerField> getChangedFields() {
+        return Collections.unmodifiableSet(changedFields);
+    }
+
+    public List<ShoppingList> getAddedShoppingLists() {
+        return Collections.unmodifiableList(addedShoppingLists);
+    }
+}
@@ -1,27 +1,106 @@
 package codingdojo.model;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
+import codingdojo.model.enums.ConflictReason;
+import codingdojo.model.enums.MatchTerm;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
 
+/**
+ * The customer a record matched and the duplicates found alongside it.
+ * <p>
+ * Almost every lookup finds at most one duplicate, so the first one is held in a field and a list is
+ * only allocated from the second on. An instance can be {@link #reset()} and filled again by the next
+ * lookup when nothing else holds on to it, as batch sync does. A record that can't be synced is
+ * reported as a {@link #conflict} rather than thrown, so bulk syncs don't pay for exceptions. In delta
+ * sync, a record no newer than the change last applied to its customer is marked {@link #isStale()}.
+ */
 @Getter
 @Setter
 public class CustomerMatches {
-    private List<Customer> duplicates = new ArrayList<>();
-    private String matchTerm;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Customer firstDuplicate;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private AppendOnlyList<Customer> allDuplicates;
+    private MatchTerm matchTerm;
     private Customer customer;
+    private boolean customerRekeyed;
+    private boolean stale;
+    @Setter(AccessLevel.NONE)
+    private ConflictReason conflictReason;
+    @Setter(AccessLevel.NONE)
+    private String conflictMessage;
 
     public void addDuplicate(@NonNull Customer duplicate) {
-        ArrayList<Customer> newList = new ArrayList<>(this.duplicates);
-        newList.add(duplicate);
-        this.setDuplicates(newList);
+        if (firstDuplicate == null) {
+            firstDuplicate = duplicate;
+            return;
+        }
+        if (allDuplicates == null) {
+            allDuplicates = new AppendOnlyList<>();
+            allDuplicates.add(firstDuplicate);
+        }
+        allDuplicates.add(duplicate);
+    }
+
+    public boolean hasDuplicates() {
+        return firstDuplicate != null;
+    }
+
+    public int getDuplicateCount() {
+        return allDuplicates != null ? allDuplicates.size() : firstDuplicate != null ? 1 : 0;
+    }
+
+    /**
+     * Visits the duplicates without allocating a list for them.
+     */
+    public void forEachDuplicate(Consumer<Customer> action) {
+        if (allDuplicates != null) {
+            allDuplicates.snapshot().forEach(action);
+        } else if (firstDuplicate != null) {
+            action.accept(firstDuplicate);
+        }
     }
 
     public List<Customer> getDuplicates() {
-        return Collections.unmodifiableList(duplicates);
+        if (allDuplicates != null) {
+            return allDuplicates.snapshot();
+        }
+        return firstDuplicate != null ? List.of(firstDuplicate) : List.of();
+    }
+
+    public void setDuplicates(List<Customer> duplicates) {
+        firstDuplicate = null;
+        allDuplicates = null;
+        duplicates.forEach(this::addDuplicate);
+    }
+
+    /**
+     * Marks the record as not syncable; the matched customer must not be written.
+     */
+    public void conflict(ConflictReason reason, String message) {
+        this.conflictReason = reason;
+        this.conflictMessage = message;
+    }
+
+    public boolean hasConflict() {
+        return conflictReason != null;
+    }
+
+    public void reset() {
+        firstDuplicate = null;
+        allDuplicates = null;
+        matchTerm = null;
+        customer = null;
+        customerRekeyed = false;
+        stale = false;
+        conflictReason = null;
+        conflictMessage = null;
     }
 }
@@ -22,6 +22,11 @@ public class ExternalCustomer {
     private String externalId;
     private String companyNumber;
     private Integer bonusPointsBalance;
+    /**
+     * Upstream change sequence number, increasing with every change of any customer; {@code null}
+     * when the feed doesn't carry one.
+     */
+    private Long sequenceNumber;
 
     public List<ShoppingList> getShoppingLists() {
         return Collections.unmodifiableList(shoppingLists);
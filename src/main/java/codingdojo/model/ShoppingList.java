@@ -7,4 +7,15 @@ public record ShoppingList(List<String> products) {
     public ShoppingList(String... products) {
         this(List.of(products));
     }
+
+    /**
+     * Stable 64-bit hash of the products, identifying the list by content.
+     */
+    public long contentHash() {
+        ContentHasher hasher = new ContentHasher().putInt(products.size());
+        for (String product : products) {
+            hasher.putString(product);
+        }
+        return hasher.hash();
+    }
 }
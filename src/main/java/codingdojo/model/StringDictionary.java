@@ -0,0 +1,117 @@
+package codingdojo.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maps equal strings from small vocabularies, such as products, stores, cities and postal codes, to one
+ * shared instance, so a large set of customers doesn't hold a copy per occurrence.
+ * <p>
+ * Once {@code maxEntries} distinct values are held, new values are returned as they are, which keeps a
+ * feed of unique values from growing the dictionary without bound. {@link #NONE} never shares anything.
+ * Thread-safe.
+ */
+public class StringDictionary {
+    public static final StringDictionary NONE = new StringDictionary(0);
+
+    private final int maxEntries;
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    public StringDictionary(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("maxEntries must not be negative: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    public String intern(String value) {
+        if (value == null || maxEntries == 0) {
+            return value;
+        }
+        String shared = values.get(value);
+        if (shared != null) {
+            return shared;
+        }
+        if (size.get() >= maxEntries) {
+            return value;
+        }
+        shared = values.putIfAbsent(value, value);
+        if (shared != null) {
+            return shared;
+        }
+        size.incrementAndGet();
+        return value;
+    }
+
+    /**
+     * Returns the address with its city and postal code shared; street addresses rarely repeat.
+     */
+    public Address intern(Address address) {
+        if (address == null || maxEntries == 0) {
+            return address;
+        }
+        String city = intern(address.city());
+        String postalCode = intern(address.postalCode());
+        if (city == address.city() && postalCode == address.postalCode()) {
+            return address;
+        }
+        return new Address(address.street(), city, postalCode);
+    }
+
+    public ShoppingList intern(ShoppingList shoppingList) {
+        if (maxEntries == 0) {
+            return shoppingList;
+        }
+        List<String> products = shoppingList.products();
+        String[] shared = null;
+        for (int i = 0; i < products.size(); i++) {
+            String product = products.get(i);
+            String sharedProduct = intern(product);
+            if (sharedProduct != product && shared == null) {
+                shared = products.toArray(new String[0]);
+            }
+            if (shared != null) {
+                shared[i] = sharedProduct;
+            }
+        }
+        return shared == null ? shoppingList : new ShoppingList(shared);
+    }
+
+    /**
+     * Replaces the vocabulary fields of the customer with shared instances, in place.
+     */
+    public void internFields(Customer customer) {
+        if (maxEntries == 0) {
+            return;
+        }
+        customer.setPreferredStore(intern(customer.getPreferredStore()));
+        customer.setAddress(intern(customer.getAddress()));
+        List<ShoppingList> shoppingLists = customer.getShoppingLists();
+        List<ShoppingList> shared = null;
+        for (int i = 0; i < shoppingLists.size(); i++) {
+            ShoppingList sharedList = intern(shoppingLists.get(i));
+            if (sharedList != shoppingLists.get(i) && shared == null) {
+                shared = new ArrayList<>(shoppingLists);
+            }
+            if (shared != null) {
+                shared.set(i, sharedList);
+            }
+        }
+        if (shared != null) {
+            customer.setShoppingLists(shared);
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public String toString() {
+        return "StringDictionary{size=" + size() + ", maxEntries=" + maxEntries + "}";
+    }
+}
@@ -0,0 +1,35 @@
+package codingdojo.model;
+
+import codingdojo.model.enums.ConflictReason;
+import codingdojo.model.enums.SyncOutcome;
+
+public record SyncResult(ExternalCustomer externalCustomer, SyncOutcome outcome,
+                         ConflictReason conflictReason, String conflictMessage) {
+
+    public static SyncResult created(ExternalCustomer externalCustomer) {
+        return new SyncResult(externalCustomer, SyncOutcome.CREATED, null, null);
+    }
+
+    public static SyncResult updated(ExternalCustomer externalCustomer) {
+        return new SyncResult(externalCustomer, SyncOutcome.UPDATED, null, null);
+    }
+
+    public static SyncResult unchanged(ExternalCustomer externalCustomer) {
+        return new SyncResult(externalCustomer, SyncOutcome.UNCHANGED, null, null);
+    }
+
+    /**
+     * The record is older than, or the same as, the change already applied and was dropped.
+     */
+    public static SyncResult stale(ExternalCustomer externalCustomer) {
+        return new SyncResult(externalCustomer, SyncOutcome.STALE, null, null);
+    }
+
+    public static SyncResult conflict(ExternalCustomer externalCustomer, ConflictReason conflictReason, String conflictMessage) {
+        return new SyncResult(externalCustomer, SyncOutcome.CONFLICT, conflictReason, conflictMessage);
+    }
+
+    public boolean isConflict() {
+        return outcome == SyncOutcome.CONFLICT;
+    }
+}
@@ -0,0 +1,79 @@
+package codingdojo.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import codingdojo.model.enums.SyncOutcome;
+
+public class SyncSummary {
+    private final List<SyncResult> results = new ArrayList<>();
+    private final Map<SyncOutcome, Integer> counts = new EnumMap<>(SyncOutcome.class);
+    private final boolean keepAllResults;
+
+    public SyncSummary() {
+        this(true);
+    }
+
+    private SyncSummary(boolean keepAllResults) {
+        this.keepAllResults = keepAllResults;
+    }
+
+    /**
+     * Counts every outcome but only keeps the results of conflicts, so memory stays bounded
+     * by the number of conflicts when syncing a large feed.
+     */
+    public static SyncSummary conflictsOnly() {
+        return new SyncSummary(false);
+    }
+
+    public void add(SyncResult result) {
+        counts.merge(result.outcome(), 1, Integer::sum);
+        keep(result);
+    }
+
+    public void addAll(SyncSummary other) {
+        other.counts.forEach((outcome, count) -> counts.merge(outcome, count, Integer::sum));
+        other.results.forEach(this::keep);
+    }
+
+    private void keep(SyncResult result) {
+        if (keepAllResults || result.outcome() == SyncOutcome.CONFLICT) {
+            results.add(result);
+        }
+    }
+
+    public List<SyncResult> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    public int count(SyncOutcome outcome) {
+        return counts.getOrDefault(outcome, 0);
+    }
+
+    public int getCreated() {
+        return count(SyncOutcome.CREATED);
+    }
+
+    public int getUpdated() {
+        return count(SyncOutcome.UPDATED);
+    }
+
+    public int getUnchanged() {
+        return count(SyncOutcome.UNCHANGED);
+    }
+
+    public int getStale() {
+        return count(SyncOutcome.STALE);
+    }
+
+    public int getConflicts() {
+        return count(SyncOutcome.CONFLICT);
+    }
+
+    public int getTotal() {
+        return counts.values().stream().mapToInt(Integer::intValue).sum();
+    }
+}
@@ -0,0 +1,10 @@
+package codingdojo.model.enums;
+
+public enum ConflictReason {
+    /** The external record is a company, the customer it matched is not. */
+    NOT_A_COMPANY,
+    /** The external record is a person, the customer it matched is not. */
+    NOT_A_PERSON,
+    /** The company number matched a customer that carries another external id. */
+    EXTERNAL_ID_MISMATCH
+}
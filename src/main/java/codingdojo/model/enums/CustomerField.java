@@ -0,0 +1,6 @@
+package codingdojo.model.enums;
+
+public enum CustomerField {
+    EXTERNAL_ID, MASTER_EXTERNAL_ID, COMPANY_NUMBER, NAME, ADDRESS, PREFERRED_STORE, CUSTOMER_TYPE,
+    BONUS_POINTS_BALANCE, SHOPPING_LISTS, APPLIED_SEQUENCE_NUMBER, FINGERPRINT
+}
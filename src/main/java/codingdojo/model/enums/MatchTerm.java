@@ -0,0 +1,5 @@
+package codingdojo.model.enums;
+
+public enum MatchTerm {
+    EXTERNAL_ID, COMPANY_NUMBER
+}
@@ -0,0 +1,5 @@
+package codingdojo.model.enums;
+
+public enum SyncOutcome {
+    CREATED, UPDATED, UNCHANGED, CONFLICT, STALE
+}
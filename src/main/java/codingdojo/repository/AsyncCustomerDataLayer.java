@@ -0,0 +1,44 @@
+package codingdojo.repository;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import codingdojo.model.Customer;
+import codingdojo.model.ShoppingList;
+import codingdojo.model.enums.CustomerField;
+
+/**
+ * Non-blocking counterpart of {@link CustomerDataLayer}, for stores with an asynchronous client.
+ * Lookups without a match complete with {@code null}.
+ */
+public interface AsyncCustomerDataLayer {
+
+    CompletableFuture<Customer> findByExternalId(String externalId);
+
+    CompletableFuture<Customer> findByMasterExternalId(String externalId);
+
+    CompletableFuture<Customer> findByCompanyNumber(String companyNumber);
+
+    CompletableFuture<Customer> createCustomerRecord(Customer customer);
+
+    CompletableFuture<Customer> updateCustomerRecord(Customer customer);
+
+    /**
+     * Writes only the given fields of an existing customer. The default writes the whole record.
+     */
+    default CompletableFuture<Customer> updateCustomerFields(Customer customer, Set<CustomerField> changedFields) {
+        return updateCustomerRecord(customer);
+    }
+
+    CompletableFuture<Void> updateShoppingLists(Collection<ShoppingList> consumerShoppingLists);
+
+    /**
+     * Adapts a blocking data layer by running each call on the executor, which bounds how many calls
+     * are outstanding at a time. The data layer must be thread-safe unless the executor is single-threaded.
+     */
+    static AsyncCustomerDataLayer of(CustomerDataLayer customerDataLayer, Executor executor) {
+        return new BlockingAsyncCustomerDataLayer(customerDataLayer, executor);
+    }
+}
@@ -0,0 +1,164 @@
+package codingdojo.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+import codingdojo.model.Customer;
+import codingdojo.model.ShoppingList;
+import codingdojo.model.enums.CustomerField;
+
+/**
+ * Chunk-scoped view of a {@link CustomerDataLayer} used by batch sync.
+ * <p>
+ * Lookups are answered from maps prefetched for the whole chunk with the multi-key finders, so the
+ * underlying data layer sees one query per index and chunk instead of one per record. Writes keep
+ * those maps current, so later records in the same chunk see customers created or re-keyed by
+ * earlier ones, and no longer see them under keys they were re-keyed away from. Creates go straight
+ * through because the data layer assigns the internal id; full and partial updates are buffered and
+ * written together by {@link #flush()}. Not thread-safe; one instance serves a single chunk.
+ */
+public class BatchCustomerDataLayer implements CustomerDataLayer {
+
+    private final CustomerDataLayer customerDataLayer;
+    private final Map<String, Customer> byExternalId = new HashMap<>();
+    private final Map<String, Customer> byMasterExternalId = new HashMap<>();
+    private final Map<String, Customer> byCompanyNumber = new HashMap<>();
+    private final Set<Customer> pendingUpdates = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<Customer, Set<CustomerField>> pendingFieldUpdates = new IdentityHashMap<>();
+
+    public BatchCustomerDataLayer(CustomerDataLayer customerDataLayer) {
+        this.customerDataLayer = customerDataLayer;
+    }
+
+    public void prefetchByExternalIds(Collection<String> externalIds) {
+        prefetch(externalIds, byExternalId, customerDataLayer::findByExternalIds);
+    }
+
+    public void prefetchByMasterExternalIds(Collection<String> externalIds) {
+        prefetch(externalIds, byMasterExternalId, customerDataLayer::findByMasterExternalIds);
+    }
+
+    public void prefetchByCompanyNumbers(Collection<String> companyNumbers) {
+        prefetch(companyNumbers, byCompanyNumber, customerDataLayer::findByCompanyNumbers);
+    }
+
+    private void prefetch(Collection<String> keys, Map<String, Customer> index,
+                          Function<Collection<String>, Map<String, Customer>> finder) {
+        Set<String> missing = new HashSet<>();
+        for (String key : keys) {
+            if (key != null && !index.containsKey(key)) {
+                missing.add(key);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        Map<String, Customer> found = finder.apply(missing);
+        for (String key : missing) {
+            index.put(key, found.get(key));
+        }
+    }
+
+    /**
+     * Writes all buffered updates to the underlying data layer.
+     */
+    public void flush() {
+        if (!pendingFieldUpdates.isEmpty()) {
+            Map<Customer, Set<CustomerField>> fieldUpdates = new IdentityHashMap<>(pendingFieldUpdates);
+            pendingFieldUpdates.clear();
+            customerDataLayer.updateCustomerFields(fieldUpdates);
+        }
+        if (!pendingUpdates.isEmpty()) {
+            List<Customer> updates = new ArrayList<>(pendingUpdates);
+            pendingUpdates.clear();
+            customerDataLayer.updateCustomerRecords(updates);
+        }
+    }
+
+    @Override
+    public Customer updateCustomerRecord(Customer customer) {
+        pendingFieldUpdates.remove(customer);
+        pendingUpdates.add(customer);
+        index(customer);
+        return customer;
+    }
+
+    /**
+     * Buffers a partial update. Fields of several partial updates to the same customer are merged,
+     * and a pending full update of the customer already covers them.
+     */
+    @Override
+    public Customer updateCustomerFields(Customer customer, Set<CustomerField> changedFields) {
+        if (!pendingUpdates.contains(customer)) {
+            pendingFieldUpdates.computeIfAbsent(customer, key -> EnumSet.noneOf(CustomerField.class)).addAll(changedFields);
+        }
+        index(customer);
+        return customer;
+    }
+
+    @Override
+    public Customer createCustomerRecord(Customer customer) {
+        Customer created = customerDataLayer.createCustomerRecord(customer);
+        index(created);
+        return created;
+    }
+
+    @Override
+    public void updateShoppingList(ShoppingList consumerShoppingList) {
+        customerDataLayer.updateShoppingList(consumerShoppingList);
+    }
+
+    @Override
+    public void updateShoppingLists(Collection<ShoppingList> consumerShoppingLists) {
+        customerDataLayer.updateShoppingLists(consumerShoppingLists);
+    }
+
+    @Override
+    public Customer findByExternalId(String externalId) {
+        return find(externalId, byExternalId, customerDataLayer::findByExternalId);
+    }
+
+    @Override
+    public Customer findByMasterExternalId(String externalId) {
+        return find(externalId, byMasterExternalId, customerDataLayer::findByMasterExternalId);
+    }
+
+    @Override
+    public Customer findByCompanyNumber(String companyNumber) {
+        return find(companyNumber, byCompanyNumber, customerDataLayer::findByCompanyNumber);
+    }
+
+    private Customer find(String key, Map<String, Customer> index, Function<String, Customer> finder) {
+        if (index.containsKey(key)) {
+            return index.get(key);
+        }
+        Customer customer = finder.apply(key);
+        index.put(key, customer);
+        return customer;
+    }
+
+    private void index(Customer customer) {
+        index(byExternalId, customer.getExternalId(), customer);
+        index(byMasterExternalId, customer.getMasterExternalId(), customer);
+        index(byCompanyNumber, customer.getCompanyNumber(), customer);
+    }
+
+    // the customer is mutated in place, so the keys it was indexed under before are found by identity;
+    // they map to null rather than being dropped, as the data layer still has the unflushed old keys
+    private static void index(Map<String, Customer> index, String key, Customer customer) {
+        index.replaceAll((indexed, found) -> found == customer && !Objects.equals(indexed, key) ? null : found);
+        if (key != null) {
+            index.put(key, customer);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package codingdojo.repository;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import codingdojo.model.Customer;
+import codingdojo.model.ShoppingList;
+import codingdojo.model.enums.CustomerField;
+
+class BlockingAsyncCustomerDataLayer implements AsyncCustomerDataLayer {
+
+    private final CustomerDataLayer customerDataLayer;
+    private final Executor executor;
+
+    BlockingAsyncCustomerDataLayer(CustomerDataLayer customerDataLayer, Executor executor) {
+        this.customerDataLayer = customerDataLayer;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Customer> findByExternalId(String externalId) {
+        return CompletableFuture.supplyAsync(() -> customerDataLayer.findByExternalId(externalId), executor);
+    }
+
+    @Override
+    public CompletableFuture<Customer> findByMasterExternalId(String externalId) {
+        return CompletableFuture.supplyAsync(() -> customerDataLayer.findByMasterExternalId(externalId), executor);
+    }
+
+    @Override
+    public CompletableFuture<Customer> findByCompanyNumber(String companyNumber) {
+        return CompletableFuture.supplyAsync(() -> customerDataLayer.findByCompanyNumber(companyNumber), executor);
+    }
+
+    @Override
+    public CompletableFuture<Customer> createCustomerRecord(Customer customer) {
+        return CompletableFuture.supplyAsync(() -> customerDataLayer.createCustomerRecord(customer), executor);
+    }
+
+    @Override
+    public CompletableFuture<Customer> updateCustomerRecord(Customer customer) {
+        return CompletableFuture.supplyAsync(() -> customerDataLayer.updateCustomerRecord(customer), executor);
+    }
+
+    @Override
+    public CompletableFuture<Customer> updateCustomerFields(Customer customer, Set<CustomerField> changedFields) {
+        return CompletableFuture.supplyAsync(() -> customerDataLayer.updateCustomerFields(customer, changedFields), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateShoppingLists(Collection<ShoppingList> consumerShoppingLists) {
+        return CompletableFuture.runAsync(() -> customerDataLayer.updateShoppingLists(consumerShoppingLists), executor);
+    }
+}
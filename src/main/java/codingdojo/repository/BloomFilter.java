@@ -0,0 +1,62 @@
+package codingdojo.repository;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import codingdojo.model.ContentHasher;
+
+/**
+ * Thread-safe Bloom filter over strings, sized for an expected number of keys and false-positive rate.
+ * Uses double hashing over a 64-bit string hash to derive the bit positions.
+ */
+class BloomFilter {
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    BloomFilter(long expectedKeys, double falsePositiveRate) {
+        if (expectedKeys < 1) {
+            throw new IllegalArgumentException("expectedKeys must be positive: " + expectedKeys);
+        }
+        if (falsePositiveRate <= 0.0 || falsePositiveRate >= 1.0) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1: " + falsePositiveRate);
+        }
+        long optimalBits = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (optimalBits + 63) >>> 6);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedKeys * Math.log(2)));
+    }
+
+    void add(String key) {
+        long hash = ContentHasher.hashKey(key);
+        long h1 = hash & 0xffffffffL;
+        long h2 = hash >>> 32;
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = bits.get(word);
+                if ((current & mask) != 0) break;
+            } while (!bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    boolean mightContain(String key) {
+        long hash = ContentHasher.hashKey(key);
+        long h1 = hash & 0xffffffffL;
+        long h2 = hash >>> 32;
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long index(long combinedHash) {
+        return (combinedHash & Long.MAX_VALUE) % bitCount;
+    }
+}
@@ -0,0 +1,146 @@
+package codingdojo.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import codingdojo.model.Customer;
+import codingdojo.model.ShoppingList;
+import codingdojo.model.enums.CustomerField;
+
+/**
+ * Skips lookups for keys that are certainly not in the data layer.
+ * <p>
+ * Keeps one Bloom filter per lookup index. A negative answer from the filter is definite, so the lookup
+ * returns {@code null} without touching the underlying data layer; a positive answer may be false and
+ * is passed through. The filters must be warmed with every stored customer through {@link #warmUp}
+ * before they are trusted; until then all lookups pass through. Afterwards created and updated customers
+ * are added as they are written. Keys are never removed, which only costs false positives.
+ */
+public class BloomFilterCustomerDataLayer implements CustomerDataLayer {
+
+    private final CustomerDataLayer customerDataLayer;
+    private final BloomFilter externalIds;
+    private final BloomFilter masterExternalIds;
+    private final BloomFilter companyNumbers;
+    private final LongAdder skippedLookups = new LongAdder();
+    private volatile boolean warmedUp;
+
+    public BloomFilterCustomerDataLayer(CustomerDataLayer customerDataLayer, long expectedCustomers, double falsePositiveRate) {
+        this.customerDataLayer = customerDataLayer;
+        this.externalIds = new BloomFilter(expectedCustomers, falsePositiveRate);
+        this.masterExternalIds = new BloomFilter(expectedCustomers, falsePositiveRate);
+        this.companyNumbers = new BloomFilter(expectedCustomers, falsePositiveRate);
+    }
+
+    /**
+     * Adds the keys of all stored customers and enables the negative fast path.
+     */
+    public void warmUp(Iterable<Customer> storedCustomers) {
+        storedCustomers.forEach(this::add);
+        warmedUp = true;
+    }
+
+    public boolean isWarmedUp() {
+        return warmedUp;
+    }
+
+    public long getSkippedLookups() {
+        return skippedLookups.sum();
+    }
+
+    @Override
+    public Customer updateCustomerRecord(Customer customer) {
+        add(customer);
+        return customerDataLayer.updateCustomerRecord(customer);
+    }
+
+    @Override
+    public Customer updateCustomerFields(Customer customer, Set<CustomerField> changedFields) {
+        add(customer);
+        return customerDataLayer.updateCustomerFields(customer, changedFields);
+    }
+
+    @Override
+    public void updateCustomerRecords(Collection<Customer> customers) {
+        customers.forEach(this::add);
+        customerDataLayer.updateCustomerRecords(customers);
+    }
+
+    @Override
+    public Customer createCustomerRecord(Customer customer) {
+        Customer created = customerDataLayer.createCustomerRecord(customer);
+        add(created);
+        return created;
+    }
+
+    @Override
+    public void updateShoppingList(ShoppingList consumerShoppingList) {
+        customerDataLayer.updateShoppingList(consumerShoppingList);
+    }
+
+    @Override
+    public void updateShoppingLists(Collection<ShoppingList> consumerShoppingLists) {
+        customerDataLayer.updateShoppingLists(consumerShoppingLists);
+    }
+
+    @Override
+    public Customer findByExternalId(String externalId) {
+        return mightContain(externalIds, externalId) ? customerDataLayer.findByExternalId(externalId) : null;
+    }
+
+    @Override
+    public Customer findByMasterExternalId(String externalId) {
+        return mightContain(masterExternalIds, externalId) ? customerDataLayer.findByMasterExternalId(externalId) : null;
+    }
+
+    @Override
+    public Customer findByCompanyNumber(String companyNumber) {
+        return mightContain(companyNumbers, companyNumber) ? customerDataLayer.findByCompanyNumber(companyNumber) : null;
+    }
+
+    @Override
+    public Map<String, Customer> findByExternalIds(Collection<String> keys) {
+        return findAll(keys, externalIds, customerDataLayer::findByExternalIds);
+    }
+
+    @Override
+    public Map<String, Customer> findByMasterExternalIds(Collection<String> keys) {
+        return findAll(keys, masterExternalIds, customerDataLayer::findByMasterExternalIds);
+    }
+
+    @Override
+    public Map<String, Customer> findByCompanyNumbers(Collection<String> keys) {
+        return findAll(keys, companyNumbers, customerDataLayer::findByCompanyNumbers);
+    }
+
+    private Map<String, Customer> findAll(Collection<String> keys, BloomFilter filter,
+                                          Function<Collection<String>, Map<String, Customer>> finder) {
+        List<String> candidates = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            if (mightContain(filter, key)) {
+                candidates.add(key);
+            }
+        }
+        return candidates.isEmpty() ? new HashMap<>() : finder.apply(candidates);
+    }
+
+    private boolean mightContain(BloomFilter filter, String key) {
+        if (!warmedUp || key == null || filter.mightContain(key)) {
+            return true;
+        }
+        skippedLookups.increment();
+        return false;
+    }
+
+    private void add(Customer customer) {
+        if (customer.getExternalId() != null) externalIds.add(customer.getExternalId());
+        if (customer.getMasterExternalId() != null) masterExternalIds.add(customer.getMasterExternalId());
+        if (customer.getCompanyNumber() != null) companyNumbers.add(customer.getCompanyNumber());
+    }
+}
@@ -0,0 +1,217 @@
+package codingdojo.repository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import codingdojo.model.Customer;
+import codingdojo.model.ShoppingList;
+import codingdojo.model.enums.CustomerField;
+
+/**
+ * Read-through cache in front of a {@link CustomerDataLayer}, covering all three lookup indexes.
+ * <p>
+ * Each index is a bounded LRU map with a time-to-live per entry. Writes refresh the entries for the
+ * written customer's current keys, and an entry whose customer no longer carries the key it was cached
+ * under (for example after a company-number match re-keyed it) is treated as a miss. Only hits from
+ * the underlying data layer are cached; a key that did not match is looked up again next time.
+ * Entries hold copies and hits hand out copies, so a caller mutating a customer whose write then
+ * fails leaves nothing unpersisted in the cache. All methods are thread-safe.
+ */
+public class CachingCustomerDataLayer implements CustomerDataLayer {
+
+    private final CustomerDataLayer customerDataLayer;
+    private final long timeToLiveNanos;
+    private final Index byExternalId;
+    private final Index byMasterExternalId;
+    private final Index byCompanyNumber;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CachingCustomerDataLayer(CustomerDataLayer customerDataLayer, int maxEntriesPerIndex, Duration timeToLive) {
+        this.customerDataLayer = customerDataLayer;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.byExternalId = new Index(maxEntriesPerIndex, Customer::getExternalId);
+        this.byMasterExternalId = new Index(maxEntriesPerIndex, Customer::getMasterExternalId);
+        this.byCompanyNumber = new Index(maxEntriesPerIndex, Customer::getCompanyNumber);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    public void invalidateAll() {
+        byExternalId.clear();
+        byMasterExternalId.clear();
+        byCompanyNumber.clear();
+    }
+
+    @Override
+    public Customer updateCustomerRecord(Customer customer) {
+        Customer updated = customerDataLayer.updateCustomerRecord(customer);
+        refresh(updated);
+        return updated;
+    }
+
+    @Override
+    public Customer updateCustomerFields(Customer customer, Set<CustomerField> changedFields) {
+        Customer updated = customerDataLayer.updateCustomerFields(customer, changedFields);
+        refresh(updated);
+        return updated;
+    }
+
+    @Override
+    public void updateCustomerRecords(Collection<Customer> customers) {
+        customerDataLayer.updateCustomerRecords(customers);
+        customers.forEach(this::refresh);
+    }
+
+    @Override
+    public Customer createCustomerRecord(Customer customer) {
+        Customer created = customerDataLayer.createCustomerRecord(customer);
+        refresh(created);
+        return created;
+    }
+
+    @Override
+    public void updateShoppingList(ShoppingList consumerShoppingList) {
+        customerDataLayer.updateShoppingList(consumerShoppingList);
+    }
+
+    @Override
+    public void updateShoppingLists(Collection<ShoppingList> consumerShoppingLists) {
+        customerDataLayer.updateShoppingLists(consumerShoppingLists);
+    }
+
+    @Override
+    public Customer findByExternalId(String externalId) {
+        return find(externalId, byExternalId, customerDataLayer::findByExternalId);
+    }
+
+    @Override
+    public Customer findByMasterExternalId(String externalId) {
+        return find(externalId, byMasterExternalId, customerDataLayer::findByMasterExternalId);
+    }
+
+    @Override
+    public Customer findByCompanyNumber(String companyNumber) {
+        return find(companyNumber, byCompanyNumber, customerDataLayer::findByCompanyNumber);
+    }
+
+    @Override
+    public Map<String, Customer> findByExternalIds(Collection<String> externalIds) {
+        return findAll(externalIds, byExternalId, customerDataLayer::findByExternalIds);
+    }
+
+    @Override
+    public Map<String, Customer> findByMasterExternalIds(Collection<String> externalIds) {
+        return findAll(externalIds, byMasterExternalId, customerDataLayer::findByMasterExternalIds);
+    }
+
+    @Override
+    public Map<String, Customer> findByCompanyNumbers(Collection<String> companyNumbers) {
+        return findAll(companyNumbers, byCompanyNumber, customerDataLayer::findByCompanyNumbers);
+    }
+
+    private Customer find(String key, Index index, Function<String, Customer> finder) {
+        Customer cached = index.get(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        Customer customer = finder.apply(key);
+        if (customer != null) {
+            index.put(key, customer);
+        }
+        return customer;
+    }
+
+    private Map<String, Customer> findAll(Collection<String> keys, Index index,
+                                          Function<Collection<String>, Map<String, Customer>> finder) {
+        Map<String, Customer> customers = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String key : keys) {
+            Customer cached = index.get(key);
+            if (cached != null) {
+                customers.put(key, cached);
+            } else {
+                missing.add(key);
+            }
+        }
+        hits.add(customers.size());
+        misses.add(missing.size());
+        if (!missing.isEmpty()) {
+            Map<String, Customer> found = finder.apply(missing);
+            found.forEach(index::put);
+            customers.putAll(found);
+        }
+        return customers;
+    }
+
+    private void refresh(Customer customer) {
+        byExternalId.put(customer.getExternalId(), customer);
+        byMasterExternalId.put(customer.getMasterExternalId(), customer);
+        byCompanyNumber.put(customer.getCompanyNumber(), customer);
+    }
+
+    private record Entry(Customer customer, long expiresAt) {
+    }
+
+    private final class Index {
+        private final LinkedHashMap<String, Entry> entries;
+        private final Function<Customer, String> key;
+
+        Index(int maxEntries, Function<Customer, String> key) {
+            this.key = key;
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        synchronized Customer get(String k) {
+            if (k == null) {
+                return null;
+            }
+            Entry entry = entries.get(k);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt() - System.nanoTime() < 0 || !k.equals(key.apply(entry.customer()))) {
+                entries.remove(k);
+                return null;
+            }
+            return entry.customer().copy();
+        }
+
+        synchronized void put(String k, Customer customer) {
+            if (k != null) {
+                entries.put(k, new Entry(customer.copy(), System.nanoTime() + timeToLiveNanos));
+            }
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package codingdojo.repository;
+
+/**
+ * Remembers the sequence number up to which a delta sync has committed its changes, so that a
+ * restarted sync resumes after it.
+ */
+public interface CheckpointStore {
+
+    /**
+     * Returns the last committed sequence number, or {@code null} if nothing has been committed yet.
+     */
+    Long load();
+
+    void commit(long sequenceNumber);
+}
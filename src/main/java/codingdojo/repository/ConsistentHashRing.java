@@ -0,0 +1,51 @@
+package codingdojo.repository;
+
+import java.util.Arrays;
+
+import codingdojo.model.ContentHasher;
+
+/**
+ * Maps hashes onto shards through a ring of virtual nodes, so that adding a shard only moves the
+ * keys that land on its nodes.
+ */
+final class ConsistentHashRing {
+    private static final int VIRTUAL_NODES_PER_SHARD = 128;
+
+    private final long[] points;
+    private final int[] shards;
+
+    ConsistentHashRing(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be positive: " + shardCount);
+        }
+        int size = shardCount * VIRTUAL_NODES_PER_SHARD;
+        long[][] nodes = new long[size][];
+        for (int shard = 0, i = 0; shard < shardCount; shard++) {
+            for (int node = 0; node < VIRTUAL_NODES_PER_SHARD; node++, i++) {
+                nodes[i] = new long[] {ContentHasher.hashKey("shard-" + shard + "#" + node), shard};
+            }
+        }
+        Arrays.sort(nodes, (a, b) -> Long.compare(a[0], b[0]));
+        this.points = new long[size];
+        this.shards = new int[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = nodes[i][0];
+            shards[i] = (int) nodes[i][1];
+        }
+    }
+
+    int shardFor(String key) {
+        return shardFor(ContentHasher.hashKey(key));
+    }
+
+    /**
+     * Returns the shard of the first virtual node at or after the hash, wrapping around.
+     */
+    int shardFor(long hash) {
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return shards[index == points.length ? 0 : index];
+    }
+}
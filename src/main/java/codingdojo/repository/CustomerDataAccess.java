@@ -1,48 +1,178 @@
 package codingdojo.repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import codingdojo.metrics.Counter;
+import codingdojo.metrics.MetricsRegistry;
 import codingdojo.model.CustomerMatches;
+import codingdojo.model.ExternalCustomer;
 import codingdojo.model.ShoppingList;
 import codingdojo.model.Customer;
+import codingdojo.model.enums.CustomerField;
+import codingdojo.model.enums.MatchTerm;
 
 public class CustomerDataAccess {
 
     private final CustomerDataLayer customerDataLayer;
+    private final Counter matchedByExternalId;
+    private final Counter matchedByCompanyNumber;
+    private final Counter unmatched;
+    private final Counter duplicatesFound;
 
     public CustomerDataAccess(CustomerDataLayer customerDataLayer) {
+        this(customerDataLayer, MetricsRegistry.NOOP);
+    }
+
+    /**
+     * Times every data layer call and counts lookups per match term, see {@link MeteredCustomerDataLayer}.
+     */
+    public CustomerDataAccess(CustomerDataLayer customerDataLayer, MetricsRegistry metricsRegistry) {
+        this.customerDataLayer = metricsRegistry == MetricsRegistry.NOOP ? customerDataLayer
+            : new MeteredCustomerDataLayer(customerDataLayer, metricsRegistry);
+        this.matchedByExternalId = metricsRegistry.counter("customer.lookup", "match", "external-id");
+        this.matchedByCompanyNumber = metricsRegistry.counter("customer.lookup", "match", "company-number");
+        this.unmatched = metricsRegistry.counter("customer.lookup", "match", "none");
+        this.duplicatesFound = metricsRegistry.counter("customer.lookup.duplicates");
+    }
+
+    private CustomerDataAccess(CustomerDataLayer customerDataLayer, CustomerDataAccess counters) {
         this.customerDataLayer = customerDataLayer;
+        this.matchedByExternalId = counters.matchedByExternalId;
+        this.matchedByCompanyNumber = counters.matchedByCompanyNumber;
+        this.unmatched = counters.unmatched;
+        this.duplicatesFound = counters.duplicatesFound;
+    }
+
+    /**
+     * Returns an access over another data layer, typically a {@link #batch}, that counts its lookups
+     * into the same meters as this one.
+     */
+    public CustomerDataAccess withDataLayer(CustomerDataLayer customerDataLayer) {
+        return new CustomerDataAccess(customerDataLayer, this);
     }
 
     public CustomerMatches loadCompanyCustomer(String externalId, String companyNumber) {
-        CustomerMatches matches = new CustomerMatches();
+        return loadCompanyCustomer(externalId, companyNumber, new CustomerMatches());
+    }
+
+    /**
+     * Like {@link #loadCompanyCustomer(String, String)}, but resets and fills the given matches.
+     */
+    public CustomerMatches loadCompanyCustomer(String externalId, String companyNumber, CustomerMatches matches) {
         Customer matchByExternalId = this.customerDataLayer.findByExternalId(externalId);
+        if (matchByExternalId != null) {
+            return companyMatches(matches, matchByExternalId, this.customerDataLayer.findByMasterExternalId(externalId), null);
+        }
+        return companyMatches(matches, null, null, this.customerDataLayer.findByCompanyNumber(companyNumber));
+    }
+
+    /**
+     * Asynchronous variant of {@link #loadCompanyCustomer(String, String, CustomerMatches)} against the
+     * given data layer. The external id and master external id lookups are issued together, at the
+     * cost of a wasted master id lookup when the external id doesn't match; the company number is
+     * only looked up then.
+     */
+    public CompletableFuture<CustomerMatches> loadCompanyCustomerAsync(AsyncCustomerDataLayer asyncDataLayer, String externalId,
+                                                                      String companyNumber, CustomerMatches matches) {
+        CompletableFuture<Customer> byExternalId = asyncDataLayer.findByExternalId(externalId);
+        CompletableFuture<Customer> byMasterId = asyncDataLayer.findByMasterExternalId(externalId);
+        return byExternalId.thenCompose(matchByExternalId -> matchByExternalId != null
+            ? byMasterId.thenApply(matchByMasterId -> companyMatches(matches, matchByExternalId, matchByMasterId, null))
+            : asyncDataLayer.findByCompanyNumber(companyNumber)
+                .thenApply(matchByCompanyNumber -> companyMatches(matches, null, null, matchByCompanyNumber)));
+    }
+
+    private CustomerMatches companyMatches(CustomerMatches matches, Customer matchByExternalId, Customer matchByMasterId,
+                                           Customer matchByCompanyNumber) {
+        matches.reset();
         if (matchByExternalId != null) {
             matches.setCustomer(matchByExternalId);
-            matches.setMatchTerm("ExternalId");
-            Customer matchByMasterId = this.customerDataLayer.findByMasterExternalId(externalId);
+            matches.setMatchTerm(MatchTerm.EXTERNAL_ID);
             if (matchByMasterId != null) matches.addDuplicate(matchByMasterId);
-        } else {
-            Customer matchByCompanyNumber = this.customerDataLayer.findByCompanyNumber(companyNumber);
-            if (matchByCompanyNumber != null) {
-                matches.setCustomer(matchByCompanyNumber);
-                matches.setMatchTerm("CompanyNumber");
-            }
+        } else if (matchByCompanyNumber != null) {
+            matches.setCustomer(matchByCompanyNumber);
+            matches.setMatchTerm(MatchTerm.COMPANY_NUMBER);
         }
-
+        count(matches);
         return matches;
     }
 
     public CustomerMatches loadPersonCustomer(String externalId) {
-        CustomerMatches matches = new CustomerMatches();
-        Customer matchByPersonalNumber = this.customerDataLayer.findByExternalId(externalId);
+        return loadPersonCustomer(externalId, new CustomerMatches());
+    }
+
+    public CustomerMatches loadPersonCustomer(String externalId, CustomerMatches matches) {
+        return personMatches(matches, this.customerDataLayer.findByExternalId(externalId));
+    }
+
+    public CompletableFuture<CustomerMatches> loadPersonCustomerAsync(AsyncCustomerDataLayer asyncDataLayer, String externalId,
+                                                                     CustomerMatches matches) {
+        return asyncDataLayer.findByExternalId(externalId).thenApply(matchByPersonalNumber -> personMatches(matches, matchByPersonalNumber));
+    }
+
+    private CustomerMatches personMatches(CustomerMatches matches, Customer matchByPersonalNumber) {
+        matches.reset();
         matches.setCustomer(matchByPersonalNumber);
-        if (matchByPersonalNumber != null) matches.setMatchTerm("ExternalId");
+        if (matchByPersonalNumber != null) matches.setMatchTerm(MatchTerm.EXTERNAL_ID);
+        count(matches);
         return matches;
     }
 
+    private void count(CustomerMatches matches) {
+        if (matches.getMatchTerm() == null) {
+            unmatched.increment();
+        } else if (matches.getMatchTerm() == MatchTerm.EXTERNAL_ID) {
+            matchedByExternalId.increment();
+        } else {
+            matchedByCompanyNumber.increment();
+        }
+        if (matches.hasDuplicates()) {
+            duplicatesFound.increment(matches.getDuplicateCount());
+        }
+    }
+
+    /**
+     * Prefetches every lookup {@link #loadCompanyCustomer} and {@link #loadPersonCustomer} will need
+     * for the given records, using one multi-key query per index. The order is the same: master id and
+     * company number are only fetched for companies whose external id did or did not match respectively.
+     */
+    public BatchCustomerDataLayer batch(List<ExternalCustomer> externalCustomers) {
+        BatchCustomerDataLayer batch = new BatchCustomerDataLayer(customerDataLayer);
+        List<String> externalIds = new ArrayList<>(externalCustomers.size());
+        for (ExternalCustomer externalCustomer : externalCustomers) {
+            externalIds.add(externalCustomer.getExternalId());
+        }
+        batch.prefetchByExternalIds(externalIds);
+
+        List<String> masterExternalIds = new ArrayList<>();
+        List<String> companyNumbers = new ArrayList<>();
+        for (ExternalCustomer externalCustomer : externalCustomers) {
+            if (!externalCustomer.isCompany()) {
+                continue;
+            }
+            if (batch.findByExternalId(externalCustomer.getExternalId()) != null) {
+                masterExternalIds.add(externalCustomer.getExternalId());
+            } else {
+                companyNumbers.add(externalCustomer.getCompanyNumber());
+            }
+        }
+        batch.prefetchByMasterExternalIds(masterExternalIds);
+        batch.prefetchByCompanyNumbers(companyNumbers);
+        return batch;
+    }
+
     public Customer updateCustomerRecord(Customer customer) {
         return customerDataLayer.updateCustomerRecord(customer);
     }
 
+    public Customer updateCustomerFields(Customer customer, Set<CustomerField> changedFields) {
+        return customerDataLayer.updateCustomerFields(customer, changedFields);
+    }
+
     public Customer createCustomerRecord(Customer customer) {
         return customerDataLayer.createCustomerRecord(customer);
     }
@@ -50,4 +180,8 @@ public class CustomerDataAccess {
     public void updateShoppingList(ShoppingList consumerShoppingList) {
         customerDataLayer.updateShoppingList(consumerShoppingList);
     }
+
+    public void updateShoppingLists(Collection<ShoppingList> consumerShoppingLists) {
+        customerDataLayer.updateShoppingLists(consumerShoppingLists);
+    }
 }
@@ -1,7 +1,13 @@
 package codingdojo.repository;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
 import codingdojo.model.ShoppingList;
 import codingdojo.model.Customer;
+import codingdojo.model.enums.CustomerField;
 
 public interface CustomerDataLayer {
 
@@ -11,9 +17,80 @@ public interface CustomerDataLayer {
 
     void updateShoppingList(ShoppingList consumerShoppingList);
 
+    /**
+     * Writes several shopping lists at once. The default issues one {@link #updateShoppingList} per list.
+     */
+    default void updateShoppingLists(Collection<ShoppingList> consumerShoppingLists) {
+        for (ShoppingList consumerShoppingList : consumerShoppingLists) {
+            updateShoppingList(consumerShoppingList);
+        }
+    }
+
     Customer findByExternalId(String externalId);
 
     Customer findByMasterExternalId(String externalId);
 
     Customer findByCompanyNumber(String companyNumber);
+
+    /**
+     * Writes only the given fields of an existing customer. The default writes the whole record.
+     */
+    default Customer updateCustomerFields(Customer customer, Set<CustomerField> changedFields) {
+        return updateCustomerRecord(customer);
+    }
+
+    /**
+     * Looks up several customers by external id. Keys without a match are absent from the result.
+     * The default issues one {@link #findByExternalId} per key; implementations should override it
+     * with a single multi-key query.
+     */
+    default Map<String, Customer> findByExternalIds(Collection<String> externalIds) {
+        Map<String, Customer> customers = new HashMap<>();
+        for (String externalId : externalIds) {
+            Customer customer = findByExternalId(externalId);
+            if (customer != null) customers.put(externalId, customer);
+        }
+        return customers;
+    }
+
+    /**
+     * Multi-key variant of {@link #findByMasterExternalId}, see {@link #findByExternalIds}.
+     */
+    default Map<String, Customer> findByMasterExternalIds(Collection<String> externalIds) {
+        Map<String, Customer> customers = new HashMap<>();
+        for (String externalId : externalIds) {
+            Customer customer = findByMasterExternalId(externalId);
+            if (customer != null) customers.put(externalId, customer);
+        }
+        return customers;
+    }
+
+    /**
+     * Multi-key variant of {@link #findByCompanyNumber}, see {@link #findByExternalIds}.
+     */
+    default Map<String, Customer> findByCompanyNumbers(Collection<String> companyNumbers) {
+        Map<String, Customer> customers = new HashMap<>();
+        for (String companyNumber : companyNumbers) {
+            Customer customer = findByCompanyNumber(companyNumber);
+            if (customer != null) customers.put(companyNumber, customer);
+        }
+        return customers;
+    }
+
+    /**
+     * Writes several existing customers at once. Implementations backed by a remote store
+     * should override this with a single bulk statement.
+     */
+    default void updateCustomerRecords(Collection<Customer> customers) {
+        for (Customer customer : customers) {
+            updateCustomerRecord(customer);
+        }
+    }
+
+    /**
+     * Multi-customer variant of {@link #updateCustomerFields(Customer, Set)}, see {@link #updateCustomerRecords}.
+     */
+    default void updateCustomerFields(Map<Customer, Set<CustomerField>> changedFieldsByCustomer) {
+        changedFieldsByCustomer.forEach(this::updateCustomerFields);
+    }
 }
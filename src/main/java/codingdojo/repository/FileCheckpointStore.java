@@ -0,0 +1,45 @@
+package codingdojo.repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Keeps the checkpoint as a decimal number in a file. A commit writes a sibling file, forces it to
+ * disk and renames it over the checkpoint, so a crash leaves either the old or the new checkpoint.
+ */
+public class FileCheckpointStore implements CheckpointStore {
+
+    private final Path file;
+    private final Path pendingFile;
+
+    public FileCheckpointStore(Path file) {
+        this.file = file;
+        this.pendingFile = file.resolveSibling(file.getFileName() + ".pending");
+    }
+
+    @Override
+    public Long load() {
+        try {
+            return Files.exists(file) ? Long.valueOf(Files.readString(file, StandardCharsets.UTF_8).trim()) : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void commit(long sequenceNumber) {
+        try {
+            Files.writeString(pendingFile, Long.toString(sequenceNumber), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE,
+                StandardOpenOption.SYNC);
+            Files.move(pendingFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
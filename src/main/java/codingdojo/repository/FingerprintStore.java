@@ -0,0 +1,14 @@
+package codingdojo.repository;
+
+/**
+ * Remembers the fingerprint of the last delivery synced for each external id.
+ */
+public interface FingerprintStore {
+
+    /**
+     * Returns the last recorded fingerprint, or {@code null} if the external id hasn't been synced yet.
+     */
+    Long find(String externalId);
+
+    void record(String externalId, long fingerprint);
+}
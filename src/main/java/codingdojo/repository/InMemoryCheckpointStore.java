@@ -0,0 +1,16 @@
+package codingdojo.repository;
+
+public class InMemoryCheckpointStore implements CheckpointStore {
+
+    private volatile Long sequenceNumber;
+
+    @Override
+    public Long load() {
+        return sequenceNumber;
+    }
+
+    @Override
+    public void commit(long sequenceNumber) {
+        this.sequenceNumber = sequenceNumber;
+    }
+}
@@ -0,0 +1,179 @@
+package codingdojo.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import codingdojo.model.Customer;
+import codingdojo.model.ShoppingList;
+import codingdojo.model.StringDictionary;
+
+/**
+ * Thread-safe in-memory data layer with hash indexes on external id, master external id and company number.
+ * <p>
+ * Reads are lock-free. Writes are serialized and re-index the customer: keys it no longer carries are
+ * dropped from their index, and a key taken over by another customer now points at the latest writer.
+ * Customers are copied on write and on read, so callers mutating a looked-up customer never change
+ * stored state behind a concurrent reader's back. Internal ids are generated from a sequence, optionally
+ * prefixed so that several instances can issue ids that don't collide. Shopping lists are kept once per
+ * distinct content. Given a {@link StringDictionary}, stored customers and shopping lists have their
+ * stores, cities, postal codes and products replaced by shared instances.
+ */
+public class InMemoryCustomerDataLayer implements CustomerDataLayer {
+
+    private final String internalIdPrefix;
+    private final StringDictionary dictionary;
+    private final AtomicLong internalIdSequence = new AtomicLong();
+    private final Map<String, Customer> customersByInternalId = new ConcurrentHashMap<>();
+    private final Map<String, IndexedKeys> indexedKeysByInternalId = new ConcurrentHashMap<>();
+    private final Map<String, Customer> customersByExternalId = new ConcurrentHashMap<>();
+    private final Map<String, Customer> customersByMasterExternalId = new ConcurrentHashMap<>();
+    private final Map<String, Customer> customersByCompanyNumber = new ConcurrentHashMap<>();
+    private final Set<ShoppingList> shoppingLists = ConcurrentHashMap.newKeySet();
+
+    public InMemoryCustomerDataLayer() {
+        this("");
+    }
+
+    public InMemoryCustomerDataLayer(String internalIdPrefix) {
+        this(internalIdPrefix, StringDictionary.NONE);
+    }
+
+    public InMemoryCustomerDataLayer(String internalIdPrefix, StringDictionary dictionary) {
+        this.internalIdPrefix = internalIdPrefix;
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public synchronized Customer updateCustomerRecord(Customer customer) {
+        if (customer.getInternalId() == null) {
+            throw new IllegalArgumentException("Cannot update customer " + customer.getExternalId() + " without internal id");
+        }
+        store(customer);
+        return customer;
+    }
+
+    @Override
+    public synchronized void updateCustomerRecords(Collection<Customer> customers) {
+        customers.forEach(this::updateCustomerRecord);
+    }
+
+    /**
+     * Stores the customer, assigning a new internal id unless it already carries one.
+     */
+    @Override
+    public synchronized Customer createCustomerRecord(Customer customer) {
+        if (customer.getInternalId() == null) {
+            customer.setInternalId(internalIdPrefix + internalIdSequence.incrementAndGet());
+        }
+        store(customer);
+        return customer;
+    }
+
+    @Override
+    public void updateShoppingList(ShoppingList consumerShoppingList) {
+        shoppingLists.add(dictionary.intern(consumerShoppingList));
+    }
+
+    @Override
+    public void updateShoppingLists(Collection<ShoppingList> consumerShoppingLists) {
+        consumerShoppingLists.forEach(this::updateShoppingList);
+    }
+
+    @Override
+    public Customer findByExternalId(String externalId) {
+        return externalId == null ? null : copyOf(customersByExternalId.get(externalId));
+    }
+
+    @Override
+    public Customer findByMasterExternalId(String externalId) {
+        return externalId == null ? null : copyOf(customersByMasterExternalId.get(externalId));
+    }
+
+    @Override
+    public Customer findByCompanyNumber(String companyNumber) {
+        return companyNumber == null ? null : copyOf(customersByCompanyNumber.get(companyNumber));
+    }
+
+    public Customer findByInternalId(String internalId) {
+        return copyOf(customersByInternalId.get(internalId));
+    }
+
+    public List<Customer> getAllCustomers() {
+        List<Customer> customers = new ArrayList<>(customersByInternalId.size());
+        customersByInternalId.values().forEach(customer -> customers.add(customer.copy()));
+        return customers;
+    }
+
+    public Set<ShoppingList> getShoppingLists() {
+        return Collections.unmodifiableSet(shoppingLists);
+    }
+
+    public int size() {
+        return customersByInternalId.size();
+    }
+
+    private void store(Customer customer) {
+        String internalId = customer.getInternalId();
+        Customer stored = copyWithSharedFields(customer, customersByInternalId.get(internalId));
+        customersByInternalId.put(internalId, stored);
+        IndexedKeys previous = indexedKeysByInternalId.get(internalId);
+        IndexedKeys current = new IndexedKeys(customer.getExternalId(), customer.getMasterExternalId(), customer.getCompanyNumber());
+        if (previous != null) {
+            unindex(customersByExternalId, previous.externalId(), current.externalId(), internalId);
+            unindex(customersByMasterExternalId, previous.masterExternalId(), current.masterExternalId(), internalId);
+            unindex(customersByCompanyNumber, previous.companyNumber(), current.companyNumber(), internalId);
+        }
+        index(customersByExternalId, current.externalId(), stored);
+        index(customersByMasterExternalId, current.masterExternalId(), stored);
+        index(customersByCompanyNumber, current.companyNumber(), stored);
+        indexedKeysByInternalId.put(internalId, current);
+    }
+
+    // lists the previous version already had are carried over as stored; only the ones added since are
+    // interned and kept. Customers only ever gain lists, unless a caller replaced them wholesale.
+    private Customer copyWithSharedFields(Customer customer, Customer previous) {
+        Customer stored = customer.copy();
+        stored.setPreferredStore(dictionary.intern(customer.getPreferredStore()));
+        stored.setAddress(dictionary.intern(customer.getAddress()));
+        List<ShoppingList> lists = customer.getShoppingLists();
+        int known = previous == null ? 0 : previous.getShoppingLists().size();
+        if (known > 0 && known <= lists.size() && lists.get(known - 1).equals(previous.getShoppingLists().get(known - 1))) {
+            stored.setShoppingLists(previous.getShoppingLists());
+        } else {
+            stored.setShoppingLists(null);
+            known = 0;
+        }
+        for (ShoppingList added : lists.subList(known, lists.size())) {
+            ShoppingList shared = dictionary.intern(added);
+            shoppingLists.add(shared);
+            stored.addShoppingList(shared);
+        }
+        return stored;
+    }
+
+    private static Customer copyOf(Customer customer) {
+        return customer == null ? null : customer.copy();
+    }
+
+    private static void index(Map<String, Customer> index, String key, Customer customer) {
+        if (key != null) {
+            index.put(key, customer);
+        }
+    }
+
+    private static void unindex(Map<String, Customer> index, String previousKey, String currentKey, String internalId) {
+        if (previousKey != null && !previousKey.equals(currentKey)) {
+            // only drop the entry if no other customer has taken the key over since
+            index.computeIfPresent(previousKey, (key, indexed) -> internalId.equals(indexed.getInternalId()) ? null : indexed);
+        }
+    }
+
+    private record IndexedKeys(String externalId, String masterExternalId, String companyNumber) {
+    }
+}
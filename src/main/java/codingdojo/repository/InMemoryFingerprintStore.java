@@ -0,0 +1,36 @@
+package codingdojo.repository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import codingdojo.model.Customer;
+
+public class InMemoryFingerprintStore implements FingerprintStore {
+
+    private final Map<String, Long> fingerprints = new ConcurrentHashMap<>();
+
+    /**
+     * Seeds the store from the fingerprints saved on stored customers, e.g. after a restart.
+     */
+    public void warmUp(Iterable<Customer> storedCustomers) {
+        for (Customer customer : storedCustomers) {
+            if (customer.getExternalId() != null && customer.getFingerprint() != null) {
+                fingerprints.put(customer.getExternalId(), customer.getFingerprint());
+            }
+        }
+    }
+
+    @Override
+    public Long find(String externalId) {
+        return fingerprints.get(externalId);
+    }
+
+    @Override
+    public void record(String externalId, long fingerprint) {
+        fingerprints.put(externalId, fingerprint);
+    }
+
+    public int size() {
+        return fingerprints.size();
+    }
+}
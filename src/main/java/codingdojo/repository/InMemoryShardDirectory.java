@@ -0,0 +1,28 @@
+package codingdojo.repository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class InMemoryShardDirectory implements ShardDirectory {
+
+    private final Map<String, Integer> shards = new ConcurrentHashMap<>();
+
+    @Override
+    public Integer find(String key) {
+        return shards.get(key);
+    }
+
+    @Override
+    public void put(String key, int shard) {
+        shards.put(key, shard);
+    }
+
+    @Override
+    public void remove(String key, int shard) {
+        shards.remove(key, shard);
+    }
+
+    public int size() {
+        return shards.size();
+    }
+}
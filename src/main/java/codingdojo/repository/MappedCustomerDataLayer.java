@@ -0,0 +1,375 @@
+package codingdojo.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+
+import codingdojo.codec.CustomerCodec;
+import codingdojo.codec.ShoppingListCodec;
+import codingdojo.model.ContentHasher;
+import codingdojo.model.Customer;
+import codingdojo.model.ShoppingList;
+
+/**
+ * Persistent data layer backed by a memory-mapped, append-only log plus memory-mapped hash indexes.
+ * <p>
+ * Every create or update appends a new version of the customer to {@value #LOG_FILE}; the indexes on
+ * internal id, external id, master external id and company number point at the latest version. An index
+ * entry left behind by a key the customer no longer carries is recognised on lookup, because the latest
+ * version no longer has that key. Shopping lists are appended once per distinct content.
+ * <p>
+ * On {@link #close()} the store is marked clean, so the next {@link #open} maps the index files as they
+ * are. After a crash the indexes are rebuilt by replaying the log. Superseded versions are reclaimed by
+ * {@link #compact()}, which also runs automatically once they take up more space than the live data.
+ * Found customers are decoded copies; changes are only persisted by writing them back.
+ * The log is mapped as a single buffer, so it is limited to 2 GB between compactions.
+ * All methods are synchronized.
+ */
+public class MappedCustomerDataLayer implements CustomerDataLayer, Closeable {
+    static final String LOG_FILE = "customers.log";
+    private static final String[] INDEX_FILES = {
+        "internal-id.idx", "external-id.idx", "master-external-id.idx", "company-number.idx", "shopping-list.idx"
+    };
+    private static final String COMPACTION_DIRECTORY = "compaction";
+
+    private static final int MAGIC = 0x43534C47;
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 64;
+    private static final int CLEAN_POSITION = 8;
+    private static final int LOG_END_POSITION = 16;
+    private static final int NEXT_INTERNAL_ID_POSITION = 24;
+    private static final int GARBAGE_BYTES_POSITION = 32;
+    private static final byte CUSTOMER_RECORD = 1;
+    private static final byte SHOPPING_LIST_RECORD = 2;
+
+    private static final long INITIAL_LOG_SIZE = 1 << 20;
+    private static final long COMPACTION_MIN_GARBAGE_BYTES = 1 << 20;
+    private static final int INITIAL_INDEX_CAPACITY = 1 << 12;
+
+    private final Path directory;
+    private FileChannel logChannel;
+    private MappedByteBuffer log;
+    private MappedHashIndex byInternalId;
+    private MappedHashIndex byExternalId;
+    private MappedHashIndex byMasterExternalId;
+    private MappedHashIndex byCompanyNumber;
+    private MappedHashIndex shoppingListsByContent;
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+
+    private MappedCustomerDataLayer(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens the store in {@code directory}, creating it if needed.
+     */
+    public static MappedCustomerDataLayer open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        MappedCustomerDataLayer store = new MappedCustomerDataLayer(directory);
+        store.openFiles();
+        return store;
+    }
+
+    @Override
+    public synchronized Customer updateCustomerRecord(Customer customer) {
+        if (customer.getInternalId() == null) {
+            throw new IllegalArgumentException("Cannot update customer " + customer.getExternalId() + " without internal id");
+        }
+        appendCustomer(customer, latestOffset(customer.getInternalId()));
+        return customer;
+    }
+
+    @Override
+    public synchronized Customer createCustomerRecord(Customer customer) {
+        if (customer.getInternalId() == null) {
+            long internalId = log.getLong(NEXT_INTERNAL_ID_POSITION);
+            log.putLong(NEXT_INTERNAL_ID_POSITION, internalId + 1);
+            customer.setInternalId(String.valueOf(internalId));
+        }
+        appendCustomer(customer, latestOffset(customer.getInternalId()));
+        return customer;
+    }
+
+    @Override
+    public synchronized void updateShoppingList(ShoppingList consumerShoppingList) {
+        long contentHash = consumerShoppingList.contentHash();
+        if (shoppingListsByContent.get(contentHash, offset -> isShoppingList(offset, consumerShoppingList)) >= 0) {
+            return;
+        }
+        scratch.clear();
+        scratch.put(SHOPPING_LIST_RECORD);
+        encode(buffer -> ShoppingListCodec.encode(consumerShoppingList, buffer));
+        long offset = append();
+        uncheckedPut(shoppingListsByContent, contentHash, offset, other -> isShoppingList(other, consumerShoppingList));
+    }
+
+    @Override
+    public synchronized Customer findByExternalId(String externalId) {
+        return find(byExternalId, externalId, Customer::getExternalId);
+    }
+
+    @Override
+    public synchronized Customer findByMasterExternalId(String externalId) {
+        return find(byMasterExternalId, externalId, Customer::getMasterExternalId);
+    }
+
+    @Override
+    public synchronized Customer findByCompanyNumber(String companyNumber) {
+        return find(byCompanyNumber, companyNumber, Customer::getCompanyNumber);
+    }
+
+    public synchronized Customer findByInternalId(String internalId) {
+        return find(byInternalId, internalId, Customer::getInternalId);
+    }
+
+    /**
+     * Rewrites the log with only the latest version of each customer and rebuilds the indexes.
+     */
+    public synchronized void compact() throws IOException {
+        Path target = directory.resolve(COMPACTION_DIRECTORY);
+        deleteRecursively(target);
+        try (MappedCustomerDataLayer compacted = open(target)) {
+            compacted.log.putLong(NEXT_INTERNAL_ID_POSITION, log.getLong(NEXT_INTERNAL_ID_POSITION));
+            byInternalId.forEachOffset(offset -> compacted.appendCustomer(readCustomer(offset), -1));
+            shoppingListsByContent.forEachOffset(offset -> compacted.updateShoppingList(readShoppingList(offset)));
+        }
+        closeFiles();
+        // the log moves last: if we crash in between, the store opens unclean and rebuilds its indexes from it
+        for (String indexFile : INDEX_FILES) {
+            Files.move(target.resolve(indexFile), directory.resolve(indexFile),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(target.resolve(LOG_FILE), directory.resolve(LOG_FILE),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        deleteRecursively(target);
+        openFiles();
+    }
+
+    /**
+     * Forces all mapped changes to disk.
+     */
+    public synchronized void force() {
+        log.force();
+        for (MappedHashIndex index : indexes()) {
+            index.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        log.putInt(CLEAN_POSITION, 1);
+        closeFiles();
+    }
+
+    private Customer find(MappedHashIndex index, String key, Function<Customer, String> keyOf) {
+        if (key == null) {
+            return null;
+        }
+        long offset = index.get(ContentHasher.hashKey(key), candidate -> key.equals(keyOf.apply(readCustomer(candidate))));
+        if (offset < 0) {
+            return null;
+        }
+        Customer customer = readCustomer(offset);
+        long latest = latestOffset(customer.getInternalId());
+        if (latest != offset) {
+            customer = readCustomer(latest);
+        }
+        return key.equals(keyOf.apply(customer)) ? customer : null;
+    }
+
+    private long latestOffset(String internalId) {
+        return byInternalId.get(ContentHasher.hashKey(internalId), candidate -> isInternalId(candidate, internalId));
+    }
+
+    private void appendCustomer(Customer customer, long previous) {
+        scratch.clear();
+        scratch.put(CUSTOMER_RECORD);
+        encode(buffer -> CustomerCodec.encode(customer, buffer));
+        long offset = append();
+        index(customer, offset);
+        if (previous >= 0) {
+            long garbage = log.getLong(GARBAGE_BYTES_POSITION) + 4 + log.getInt((int) previous);
+            log.putLong(GARBAGE_BYTES_POSITION, garbage);
+            long live = log.getLong(LOG_END_POSITION) - HEADER_SIZE - garbage;
+            if (garbage > COMPACTION_MIN_GARBAGE_BYTES && garbage > live) {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    private void index(Customer customer, long offset) {
+        String internalId = customer.getInternalId();
+        uncheckedPut(byInternalId, internalId, offset, other -> isInternalId(other, internalId));
+        String externalId = customer.getExternalId();
+        uncheckedPut(byExternalId, externalId, offset, other -> externalId.equals(readCustomer(other).getExternalId()));
+        String masterExternalId = customer.getMasterExternalId();
+        uncheckedPut(byMasterExternalId, masterExternalId, offset, other -> masterExternalId.equals(readCustomer(other).getMasterExternalId()));
+        String companyNumber = customer.getCompanyNumber();
+        uncheckedPut(byCompanyNumber, companyNumber, offset, other -> companyNumber.equals(readCustomer(other).getCompanyNumber()));
+    }
+
+    private void uncheckedPut(MappedHashIndex index, String key, long offset, LongPredicate sameKey) {
+        if (key != null) {
+            uncheckedPut(index, ContentHasher.hashKey(key), offset, sameKey);
+        }
+    }
+
+    private void uncheckedPut(MappedHashIndex index, long hash, long offset, LongPredicate sameKey) {
+        try {
+            index.put(hash, offset, sameKey);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void encode(Consumer<ByteBuffer> writer) {
+        int start = scratch.position();
+        while (true) {
+            try {
+                writer.accept(scratch);
+                return;
+            } catch (BufferOverflowException e) {
+                ByteBuffer larger = ByteBuffer.allocate(scratch.capacity() * 2);
+                larger.put(scratch.flip().limit(start));
+                scratch = larger;
+            }
+        }
+    }
+
+    // writes the scratch buffer as [length][record] at the end of the log and returns its offset
+    private long append() {
+        scratch.flip();
+        int length = scratch.remaining();
+        long offset = log.getLong(LOG_END_POSITION);
+        long end = offset + 4 + length;
+        if (end > log.capacity()) {
+            remapLog(end);
+        }
+        log.putInt((int) offset, length);
+        log.put((int) offset + 4, scratch, 0, length);
+        log.putLong(LOG_END_POSITION, end);
+        return offset;
+    }
+
+    private Customer readCustomer(long offset) {
+        return CustomerCodec.decode(record(offset));
+    }
+
+    private ShoppingList readShoppingList(long offset) {
+        return ShoppingListCodec.decode(record(offset));
+    }
+
+    private ByteBuffer record(long offset) {
+        int length = log.getInt((int) offset);
+        // skip the record type byte
+        return log.slice((int) offset + 5, length - 1);
+    }
+
+    private boolean isInternalId(long offset, String internalId) {
+        return internalId.equals(readCustomer(offset).getInternalId());
+    }
+
+    private boolean isShoppingList(long offset, ShoppingList shoppingList) {
+        return shoppingList.equals(readShoppingList(offset));
+    }
+
+    private void openFiles() throws IOException {
+        Path logFile = directory.resolve(LOG_FILE);
+        boolean exists = Files.exists(logFile);
+        logChannel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        log = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(logChannel.size(), INITIAL_LOG_SIZE));
+        if (!exists) {
+            log.putInt(0, MAGIC).putInt(4, VERSION).putInt(CLEAN_POSITION, 1);
+            log.putLong(LOG_END_POSITION, HEADER_SIZE).putLong(NEXT_INTERNAL_ID_POSITION, 1).putLong(GARBAGE_BYTES_POSITION, 0);
+        } else if (log.getInt(0) != MAGIC || log.getInt(4) != VERSION) {
+            logChannel.close();
+            throw new IOException("Not a customer log of version " + VERSION + ": " + logFile);
+        }
+        boolean clean = log.getInt(CLEAN_POSITION) == 1;
+        if (!clean) {
+            for (String indexFile : INDEX_FILES) {
+                Files.deleteIfExists(directory.resolve(indexFile));
+            }
+        }
+        byInternalId = MappedHashIndex.open(directory.resolve(INDEX_FILES[0]), INITIAL_INDEX_CAPACITY);
+        byExternalId = MappedHashIndex.open(directory.resolve(INDEX_FILES[1]), INITIAL_INDEX_CAPACITY);
+        byMasterExternalId = MappedHashIndex.open(directory.resolve(INDEX_FILES[2]), INITIAL_INDEX_CAPACITY);
+        byCompanyNumber = MappedHashIndex.open(directory.resolve(INDEX_FILES[3]), INITIAL_INDEX_CAPACITY);
+        shoppingListsByContent = MappedHashIndex.open(directory.resolve(INDEX_FILES[4]), INITIAL_INDEX_CAPACITY);
+        if (!clean) {
+            replay();
+        }
+        log.putInt(CLEAN_POSITION, 0);
+        log.force();
+    }
+
+    private void replay() {
+        long end = log.getLong(LOG_END_POSITION);
+        for (long offset = HEADER_SIZE; offset < end; offset += 4 + log.getInt((int) offset)) {
+            if (log.get((int) offset + 4) == CUSTOMER_RECORD) {
+                index(readCustomer(offset), offset);
+            } else {
+                ShoppingList shoppingList = readShoppingList(offset);
+                uncheckedPut(shoppingListsByContent, shoppingList.contentHash(), offset,
+                    other -> isShoppingList(other, shoppingList));
+            }
+        }
+    }
+
+    private void remapLog(long required) {
+        long size = log.capacity();
+        while (size < required) {
+            size *= 2;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Customer log exceeds 2 GB, compact it before writing more");
+        }
+        try {
+            log.force();
+            log = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void closeFiles() throws IOException {
+        log.force();
+        logChannel.close();
+        for (MappedHashIndex index : indexes()) {
+            index.close();
+        }
+    }
+
+    private List<MappedHashIndex> indexes() {
+        return List.of(byInternalId, byExternalId, byMasterExternalId, byCompanyNumber, shoppingListsByContent);
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package codingdojo.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Open-addressing hash table in a memory-mapped file, mapping 64-bit key hashes to log offsets.
+ * <p>
+ * Only the hash is stored, so callers pass a predicate that checks the record at a candidate offset
+ * really carries the key. Several keys with the same hash therefore still get slots of their own.
+ * A hash of zero marks an empty slot. The table doubles once it is {@value #MAX_LOAD_PERCENT}% full.
+ * Not thread-safe; {@link MappedCustomerDataLayer} serializes access.
+ */
+final class MappedHashIndex implements Closeable {
+    private static final int MAGIC = 0x43534958;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 16;
+    private static final int MAX_LOAD_PERCENT = 70;
+
+    private final Path path;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int size;
+
+    private MappedHashIndex(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Maps the index file, creating an empty one if it doesn't exist yet.
+     */
+    static MappedHashIndex open(Path path, int initialCapacity) throws IOException {
+        MappedHashIndex index = new MappedHashIndex(path);
+        if (Files.exists(path)) {
+            index.map();
+        } else {
+            index.create(path, Integer.highestOneBit(Math.max(16, initialCapacity) - 1) << 1);
+            index.map();
+        }
+        return index;
+    }
+
+    long get(long hash, LongPredicate matches) {
+        hash = nonZero(hash);
+        int mask = capacity - 1;
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            long slotHash = buffer.getLong(slotPosition(slot));
+            if (slotHash == 0) {
+                return -1;
+            }
+            long offset = buffer.getLong(slotPosition(slot) + 8);
+            if (slotHash == hash && matches.test(offset)) {
+                return offset;
+            }
+        }
+    }
+
+    /**
+     * Points the key at {@code offset}, replacing the slot whose current offset satisfies {@code sameKey}.
+     */
+    void put(long hash, long offset, LongPredicate sameKey) throws IOException {
+        hash = nonZero(hash);
+        int mask = capacity - 1;
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            int position = slotPosition(slot);
+            long slotHash = buffer.getLong(position);
+            if (slotHash == 0) {
+                buffer.putLong(position, hash).putLong(position + 8, offset);
+                buffer.putInt(8, ++size);
+                if (size * 100L > capacity * (long) MAX_LOAD_PERCENT) {
+                    grow();
+                }
+                return;
+            }
+            if (slotHash == hash && sameKey.test(buffer.getLong(position + 8))) {
+                buffer.putLong(position + 8, offset);
+                return;
+            }
+        }
+    }
+
+    void forEachOffset(LongConsumer action) {
+        for (int slot = 0; slot < capacity; slot++) {
+            if (buffer.getLong(slotPosition(slot)) != 0) {
+                action.accept(buffer.getLong(slotPosition(slot) + 8));
+            }
+        }
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private void grow() throws IOException {
+        Path grown = path.resolveSibling(path.getFileName() + ".grow");
+        int newCapacity = capacity << 1;
+        create(grown, newCapacity);
+        try (FileChannel target = FileChannel.open(grown, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer targetBuffer = target.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) newCapacity * SLOT_SIZE);
+            int mask = newCapacity - 1;
+            for (int slot = 0; slot < capacity; slot++) {
+                long hash = buffer.getLong(slotPosition(slot));
+                if (hash == 0) {
+                    continue;
+                }
+                int targetSlot = (int) hash & mask;
+                while (targetBuffer.getLong(HEADER_SIZE + targetSlot * SLOT_SIZE) != 0) {
+                    targetSlot = (targetSlot + 1) & mask;
+                }
+                targetBuffer.putLong(HEADER_SIZE + targetSlot * SLOT_SIZE, hash)
+                    .putLong(HEADER_SIZE + targetSlot * SLOT_SIZE + 8, buffer.getLong(slotPosition(slot) + 8));
+            }
+            targetBuffer.putInt(8, size);
+            targetBuffer.force();
+        }
+        channel.close();
+        Files.move(grown, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        map();
+    }
+
+    private void create(Path file, int slots) throws IOException {
+        try (FileChannel target = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer header = target.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * SLOT_SIZE);
+            header.putInt(0, MAGIC).putInt(4, slots).putInt(8, 0);
+            header.force();
+        }
+    }
+
+    private void map() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        if (buffer.getInt(0) != MAGIC) {
+            channel.close();
+            throw new IOException("Not a customer index file: " + path);
+        }
+        capacity = buffer.getInt(4);
+        size = buffer.getInt(8);
+    }
+
+    private static int slotPosition(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static long nonZero(long hash) {
+        return hash == 0 ? 1 : hash;
+    }
+}
@@ -0,0 +1,112 @@
+package codingdojo.repository;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import codingdojo.metrics.MetricsRegistry;
+import codingdojo.metrics.Timer;
+import codingdojo.model.Customer;
+import codingdojo.model.ShoppingList;
+import codingdojo.model.enums.CustomerField;
+
+/**
+ * Times every call to a {@link CustomerDataLayer} as {@code customer.datalayer{operation=...}}.
+ */
+public class MeteredCustomerDataLayer implements CustomerDataLayer {
+    static final String TIMER = "customer.datalayer";
+
+    private final CustomerDataLayer customerDataLayer;
+    private final Timer updateCustomerRecord;
+    private final Timer updateCustomerFields;
+    private final Timer updateCustomerRecords;
+    private final Timer createCustomerRecord;
+    private final Timer updateShoppingList;
+    private final Timer updateShoppingLists;
+    private final Timer findByExternalId;
+    private final Timer findByMasterExternalId;
+    private final Timer findByCompanyNumber;
+    private final Timer findByExternalIds;
+    private final Timer findByMasterExternalIds;
+    private final Timer findByCompanyNumbers;
+
+    public MeteredCustomerDataLayer(CustomerDataLayer customerDataLayer, MetricsRegistry metricsRegistry) {
+        this.customerDataLayer = customerDataLayer;
+        this.updateCustomerRecord = timer(metricsRegistry, "updateCustomerRecord");
+        this.updateCustomerFields = timer(metricsRegistry, "updateCustomerFields");
+        this.updateCustomerRecords = timer(metricsRegistry, "updateCustomerRecords");
+        this.createCustomerRecord = timer(metricsRegistry, "createCustomerRecord");
+        this.updateShoppingList = timer(metricsRegistry, "updateShoppingList");
+        this.updateShoppingLists = timer(metricsRegistry, "updateShoppingLists");
+        this.findByExternalId = timer(metricsRegistry, "findByExternalId");
+        this.findByMasterExternalId = timer(metricsRegistry, "findByMasterExternalId");
+        this.findByCompanyNumber = timer(metricsRegistry, "findByCompanyNumber");
+        this.findByExternalIds = timer(metricsRegistry, "findByExternalIds");
+        this.findByMasterExternalIds = timer(metricsRegistry, "findByMasterExternalIds");
+        this.findByCompanyNumbers = timer(metricsRegistry, "findByCompanyNumbers");
+    }
+
+    private static Timer timer(MetricsRegistry metricsRegistry, String operation) {
+        return metricsRegistry.timer(TIMER, "operation", operation);
+    }
+
+    @Override
+    public Customer updateCustomerRecord(Customer customer) {
+        return updateCustomerRecord.record(() -> customerDataLayer.updateCustomerRecord(customer));
+    }
+
+    @Override
+    public Customer updateCustomerFields(Customer customer, Set<CustomerField> changedFields) {
+        return updateCustomerFields.record(() -> customerDataLayer.updateCustomerFields(customer, changedFields));
+    }
+
+    @Override
+    public void updateCustomerRecords(Collection<Customer> customers) {
+        updateCustomerRecords.record(() -> customerDataLayer.updateCustomerRecords(customers));
+    }
+
+    @Override
+    public Customer createCustomerRecord(Customer customer) {
+        return createCustomerRecord.record(() -> customerDataLayer.createCustomerRecord(customer));
+    }
+
+    @Override
+    public void updateShoppingList(ShoppingList consumerShoppingList) {
+        updateShoppingList.record(() -> customerDataLayer.updateShoppingList(consumerShoppingList));
+    }
+
+    @Override
+    public void updateShoppingLists(Collection<ShoppingList> consumerShoppingLists) {
+        updateShoppingLists.record(() -> customerDataLayer.updateShoppingLists(consumerShoppingLists));
+    }
+
+    @Override
+    public Customer findByExternalId(String externalId) {
+        return findByExternalId.record(() -> customerDataLayer.findByExternalId(externalId));
+    }
+
+    @Override
+    public Customer findByMasterExternalId(String externalId) {
+        return findByMasterExternalId.record(() -> customerDataLayer.findByMasterExternalId(externalId));
+    }
+
+    @Override
+    public Customer findByCompanyNumber(String companyNumber) {
+        return findByCompanyNumber.record(() -> customerDataLayer.findByCompanyNumber(companyNumber));
+    }
+
+    @Override
+    public Map<String, Customer> findByExternalIds(Collection<String> externalIds) {
+        return findByExternalIds.record(() -> customerDataLayer.findByExternalIds(externalIds));
+    }
+
+    @Override
+    public Map<String, Customer> findByMasterExternalIds(Collection<String> externalIds) {
+        return findByMasterExternalIds.record(() -> customerDataLayer.findByMasterExternalIds(externalIds));
+    }
+
+    @Override
+    public Map<String, Customer> findByCompanyNumbers(Collection<String> companyNumbers) {
+        return findByCompanyNumbers.record(() -> customerDataLayer.findByCompanyNumbers(companyNumbers));
+    }
+}
@@ -0,0 +1,37 @@
+package codingdojo.repository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Key to shard entries kept next to one shard of a {@link ShardedCustomerDataLayer}. An entry for a
+ * key lives in the directory of the shard the key hashes to and points at the shard that actually
+ * holds the customer, so the routing survives a restart of the router.
+ */
+public interface ShardDirectory {
+
+    /**
+     * Returns the shard recorded for the key, or {@code null} if there is no entry.
+     */
+    Integer find(String key);
+
+    /**
+     * Multi-key variant of {@link #find}. Keys without an entry are absent from the result.
+     */
+    default Map<String, Integer> findAll(Collection<String> keys) {
+        Map<String, Integer> shards = new HashMap<>();
+        for (String key : keys) {
+            Integer shard = find(key);
+            if (shard != null) shards.put(key, shard);
+        }
+        return shards;
+    }
+
+    void put(String key, int shard);
+
+    /**
+     * Removes the entry only if it still points at the given shard.
+     */
+    void remove(String key, int shard);
+}
@@ -0,0 +1,266 @@
+package codingdojo.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import codingdojo.model.Customer;
+import codingdojo.model.ShoppingList;
+import codingdojo.model.enums.CustomerField;
+
+/**
+ * Spreads customers over several {@link CustomerDataLayer} shards.
+ * <p>
+ * A new customer is placed on a shard by consistent hashing of its external id, or of its company
+ * number when it has none, and stays there for good, since the data layer has no way to move it.
+ * Because re-keying or matching by company number can leave a customer on another shard than its
+ * current keys hash to, every write records those keys, and the internal id, in the
+ * {@link ShardDirectory} of the shard each key hashes to, pointing at the shard holding the customer.
+ * Lookups consult that directory and otherwise go to the shard the key hashes to; updates go to the
+ * shard the internal id points at. As the directories sit next to the shards, a router rebuilt over
+ * the same shards and directories finds every customer again. Shopping lists are placed by their
+ * content hash.
+ * <p>
+ * Shards must issue distinct internal ids, for instance {@link InMemoryCustomerDataLayer}s with
+ * different prefixes as {@link #inMemory(int)} sets up. All methods are thread-safe if the shards and
+ * directories are.
+ */
+public class ShardedCustomerDataLayer implements CustomerDataLayer {
+    private static final String INTERNAL_ID = "internalId:";
+    private static final String EXTERNAL_ID = "externalId:";
+    private static final String MASTER_EXTERNAL_ID = "masterExternalId:";
+    private static final String COMPANY_NUMBER = "companyNumber:";
+
+    private final List<CustomerDataLayer> shards;
+    private final List<ShardDirectory> directories;
+    private final ConsistentHashRing ring;
+
+    /**
+     * @param directories one directory per shard, in the same order
+     */
+    public ShardedCustomerDataLayer(List<? extends CustomerDataLayer> shards, List<? extends ShardDirectory> directories) {
+        if (shards.size() != directories.size()) {
+            throw new IllegalArgumentException(shards.size() + " shards but " + directories.size() + " directories");
+        }
+        this.shards = List.copyOf(shards);
+        this.directories = List.copyOf(directories);
+        this.ring = new ConsistentHashRing(shards.size());
+    }
+
+    /**
+     * Local stand-in for a sharded deployment, with internal ids prefixed {@code shard-<n>:}.
+     */
+    public static ShardedCustomerDataLayer inMemory(int shardCount) {
+        List<InMemoryCustomerDataLayer> shards = new ArrayList<>(shardCount);
+        List<InMemoryShardDirectory> directories = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new InMemoryCustomerDataLayer("shard-" + i + ":"));
+            directories.add(new InMemoryShardDirectory());
+        }
+        return new ShardedCustomerDataLayer(shards, directories);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public CustomerDataLayer getShard(int shard) {
+        return shards.get(shard);
+    }
+
+    public ShardDirectory getDirectory(int shard) {
+        return directories.get(shard);
+    }
+
+    /**
+     * Returns the shard holding the customer, or the one it would be placed on if it isn't stored yet.
+     */
+    public int shardOf(Customer customer) {
+        String internalId = customer.getInternalId();
+        if (internalId == null) {
+            return placementShard(customer);
+        }
+        int hashed = ring.shardFor(internalId);
+        Integer shard = directories.get(hashed).find(INTERNAL_ID + internalId);
+        return shard != null ? shard : hashed;
+    }
+
+    private int placementShard(Customer customer) {
+        String key = customer.getExternalId() != null ? customer.getExternalId() : customer.getCompanyNumber();
+        return key == null ? 0 : ring.shardFor(key);
+    }
+
+    @Override
+    public Customer createCustomerRecord(Customer customer) {
+        int shard = placementShard(customer);
+        Customer created = shards.get(shard).createCustomerRecord(customer);
+        index(INTERNAL_ID, created.getInternalId(), shard);
+        index(created, shard);
+        return created;
+    }
+
+    @Override
+    public Customer updateCustomerRecord(Customer customer) {
+        int shard = shardOf(customer);
+        Customer updated = shards.get(shard).updateCustomerRecord(customer);
+        index(updated, shard);
+        return updated;
+    }
+
+    @Override
+    public Customer updateCustomerFields(Customer customer, Set<CustomerField> changedFields) {
+        int shard = shardOf(customer);
+        Customer updated = shards.get(shard).updateCustomerFields(customer, changedFields);
+        if (changedFields.contains(CustomerField.EXTERNAL_ID)) index(EXTERNAL_ID, updated.getExternalId(), shard);
+        if (changedFields.contains(CustomerField.MASTER_EXTERNAL_ID)) index(MASTER_EXTERNAL_ID, updated.getMasterExternalId(), shard);
+        if (changedFields.contains(CustomerField.COMPANY_NUMBER)) index(COMPANY_NUMBER, updated.getCompanyNumber(), shard);
+        return updated;
+    }
+
+    @Override
+    public void updateCustomerRecords(Collection<Customer> customers) {
+        List<String> internalIds = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            if (customer.getInternalId() != null) internalIds.add(customer.getInternalId());
+        }
+        Map<String, Integer> located = locate(INTERNAL_ID, internalIds);
+
+        Map<Integer, List<Customer>> byShard = new HashMap<>();
+        for (Customer customer : customers) {
+            Integer shard = customer.getInternalId() == null ? null : located.get(customer.getInternalId());
+            byShard.computeIfAbsent(shard != null ? shard : placementShard(customer), s -> new ArrayList<>()).add(customer);
+        }
+        byShard.forEach((shard, shardCustomers) -> {
+            shards.get(shard).updateCustomerRecords(shardCustomers);
+            shardCustomers.forEach(customer -> index(customer, shard));
+        });
+    }
+    @Override
+    public void updateShoppingList(ShoppingList consumerShoppingList) {
+        shards.get(ring.shardFor(consumerShoppingList.contentHash())).updateShoppingList(consumerShoppingList);
+    }
+
+    @Override
+    public void updateShoppingLists(Collection<ShoppingList> consumerShoppingLists) {
+        Map<Integer, List<ShoppingList>> byShard = new HashMap<>();
+        for (ShoppingList shoppingList : consumerShoppingLists) {
+            byShard.computeIfAbsent(ring.shardFor(shoppingList.contentHash()), shard -> new ArrayList<>()).add(shoppingList);
+        }
+        byShard.forEach((shard, shardLists) -> shards.get(shard).updateShoppingLists(shardLists));
+    }
+
+    @Override
+    public Customer findByExternalId(String externalId) {
+        return find(EXTERNAL_ID, externalId, Customer::getExternalId, CustomerDataLayer::findByExternalId);
+    }
+
+    @Override
+    public Customer findByMasterExternalId(String externalId) {
+        return find(MASTER_EXTERNAL_ID, externalId, Customer::getMasterExternalId, CustomerDataLayer::findByMasterExternalId);
+    }
+
+    @Override
+    public Customer findByCompanyNumber(String companyNumber) {
+        return find(COMPANY_NUMBER, companyNumber, Customer::getCompanyNumber, CustomerDataLayer::findByCompanyNumber);
+    }
+
+    @Override
+    public Map<String, Customer> findByExternalIds(Collection<String> externalIds) {
+        return findAll(EXTERNAL_ID, externalIds, Customer::getExternalId, CustomerDataLayer::findByExternalIds);
+    }
+
+    @Override
+    public Map<String, Customer> findByMasterExternalIds(Collection<String> externalIds) {
+        return findAll(MASTER_EXTERNAL_ID, externalIds, Customer::getMasterExternalId, CustomerDataLayer::findByMasterExternalIds);
+    }
+
+    @Override
+    public Map<String, Customer> findByCompanyNumbers(Collection<String> companyNumbers) {
+        return findAll(COMPANY_NUMBER, companyNumbers, Customer::getCompanyNumber, CustomerDataLayer::findByCompanyNumbers);
+    }
+
+    private Customer find(String kind, String key, Function<Customer, String> keyOf,
+                          BiFunction<CustomerDataLayer, String, Customer> finder) {
+        if (key == null) {
+            return null;
+        }
+        int hashed = ring.shardFor(key);
+        Integer indexed = directories.get(hashed).find(kind + key);
+        if (indexed != null && indexed != hashed) {
+            Customer customer = finder.apply(shards.get(indexed), key);
+            if (customer != null && key.equals(keyOf.apply(customer))) {
+                return customer;
+            }
+            // the customer has since given the key up
+            directories.get(hashed).remove(kind + key, indexed);
+        }
+        return finder.apply(shards.get(hashed), key);
+    }
+
+    private Map<String, Customer> findAll(String kind, Collection<String> keys, Function<Customer, String> keyOf,
+                                          BiFunction<CustomerDataLayer, Collection<String>, Map<String, Customer>> finder) {
+        Map<String, Integer> located = locate(kind, keys);
+        Map<Integer, List<String>> indexedByShard = new HashMap<>();
+        Map<Integer, List<String>> hashedByShard = new HashMap<>();
+        located.forEach((key, shard) -> {
+            Map<Integer, List<String>> byShard = shard == ring.shardFor(key) ? hashedByShard : indexedByShard;
+            byShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(key);
+        });
+
+        Map<String, Customer> customers = new HashMap<>();
+        indexedByShard.forEach((shard, shardKeys) -> {
+            Map<String, Customer> found = finder.apply(shards.get(shard), shardKeys);
+            for (String key : shardKeys) {
+                Customer customer = found.get(key);
+                if (customer != null && key.equals(keyOf.apply(customer))) {
+                    customers.put(key, customer);
+                } else {
+                    int hashed = ring.shardFor(key);
+                    directories.get(hashed).remove(kind + key, shard);
+                    hashedByShard.computeIfAbsent(hashed, s -> new ArrayList<>()).add(key);
+                }
+            }
+        });
+        hashedByShard.forEach((shard, shardKeys) -> customers.putAll(finder.apply(shards.get(shard), shardKeys)));
+        return customers;
+    }
+
+    /**
+     * Returns the shard each key points at, asking each directory once for the keys that hash to it.
+     * Keys without an entry point at the shard they hash to.
+     */
+    private Map<String, Integer> locate(String kind, Collection<String> keys) {
+        Map<Integer, List<String>> byDirectory = new HashMap<>();
+        Map<String, Integer> located = new HashMap<>();
+        for (String key : keys) {
+            if (key == null) {
+                continue;
+            }
+            int hashed = ring.shardFor(key);
+            located.put(key, hashed);
+            byDirectory.computeIfAbsent(hashed, shard -> new ArrayList<>()).add(kind + key);
+        }
+        byDirectory.forEach((shard, entries) -> directories.get(shard).findAll(entries)
+            .forEach((entry, indexed) -> located.put(entry.substring(kind.length()), indexed)));
+        return located;
+    }
+
+    private void index(Customer customer, int shard) {
+        index(EXTERNAL_ID, customer.getExternalId(), shard);
+        index(MASTER_EXTERNAL_ID, customer.getMasterExternalId(), shard);
+        index(COMPANY_NUMBER, customer.getCompanyNumber(), shard);
+    }
+
+    // keys that hash to the shard holding the customer need no entry; entries a customer has given up
+    // are dropped by the lookups that run into them
+    private void index(String kind, String key, int shard) {
+        if (key != null && ring.shardFor(key) != shard) {
+            directories.get(ring.shardFor(key)).put(kind + key, shard);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package codingdojo.repository;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import codingdojo.model.Customer;
+import codingdojo.model.ShoppingList;
+import codingdojo.model.enums.CustomerField;
+
+/**
+ * Buffers updates of existing customers in front of a {@link CustomerDataLayer} and writes them later.
+ * <p>
+ * Several updates of the same internal id before a flush are coalesced into one write: a full record
+ * write if any of them was one, otherwise a field write of the union of the changed fields. Buffered
+ * updates are written once {@code maxPendingUpdates} customers are pending, every {@code maxDelay},
+ * on {@link #flush()} and on {@link #close()}. Lookups see buffered updates, so callers can't tell
+ * the data layer is behind. Creates and shopping lists go straight through.
+ * <p>
+ * Updates are only durable once flushed; {@link #close()} must be called before shutdown. A failed
+ * automatic flush, on the timer or on a full buffer, keeps the updates buffered and is retried on the
+ * next one rather than failing the update that triggered it; failures show in
+ * {@link #getFailedFlushCount()} and {@link #getLastFlushFailure()}. While flushes keep failing, every
+ * further update retries one and the buffer grows past {@code maxPendingUpdates}. All methods are
+ * thread-safe; a flush holds off other calls while it writes.
+ * <p>
+ * Since writes return before they are durable, a {@link codingdojo.service.CustomerSync} on top of
+ * this layer must not use a checkpoint or fingerprint store: they would acknowledge records whose
+ * updates are still buffered and lost if the process dies.
+ */
+public class WriteBehindCustomerDataLayer implements CustomerDataLayer, Closeable {
+
+    private final CustomerDataLayer customerDataLayer;
+    private final int maxPendingUpdates;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, PendingUpdate> pending = new LinkedHashMap<>();
+    private final Map<String, Customer> pendingByExternalId = new HashMap<>();
+    private final Map<String, Customer> pendingByMasterExternalId = new HashMap<>();
+    private final Map<String, Customer> pendingByCompanyNumber = new HashMap<>();
+    private long coalescedUpdates;
+    private long failedFlushes;
+    private RuntimeException lastFlushFailure;
+    private boolean closed;
+
+    public WriteBehindCustomerDataLayer(CustomerDataLayer customerDataLayer, int maxPendingUpdates, Duration maxDelay) {
+        if (maxPendingUpdates < 1) {
+            throw new IllegalArgumentException("maxPendingUpdates must be positive: " + maxPendingUpdates);
+        }
+        if (maxDelay.isNegative() || maxDelay.isZero()) {
+            throw new IllegalArgumentException("maxDelay must be positive: " + maxDelay);
+        }
+        this.customerDataLayer = customerDataLayer;
+        this.maxPendingUpdates = maxPendingUpdates;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "customer-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long delayNanos = maxDelay.toNanos();
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, delayNanos, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Writes all buffered updates and returns once they are written.
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Customer> records = new ArrayList<>();
+        for (PendingUpdate update : pending.values()) {
+            if (update.changedFields == null) {
+                records.add(update.customer);
+            }
+        }
+        if (!records.isEmpty()) {
+            customerDataLayer.updateCustomerRecords(records);
+        }
+        Iterator<PendingUpdate> updates = pending.values().iterator();
+        while (updates.hasNext()) {
+            PendingUpdate update = updates.next();
+            if (update.changedFields != null) {
+                customerDataLayer.updateCustomerFields(update.customer, update.changedFields);
+            }
+            updates.remove();
+        }
+        pendingByExternalId.clear();
+        pendingByMasterExternalId.clear();
+        pendingByCompanyNumber.clear();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+            recordFlush(null);
+        } catch (RuntimeException e) {
+            // the updates stay buffered and the next flush retries them
+            recordFlush(e);
+        }
+    }
+
+    private synchronized void recordFlush(RuntimeException failure) {
+        if (failure != null) {
+            failedFlushes++;
+        }
+        lastFlushFailure = failure;
+    }
+
+    /**
+     * Stops the background flushing and writes whatever is still buffered. Later writes are rejected.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        synchronized (this) {
+            closed = true;
+            flush();
+        }
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * The number of updates that were merged into an update already buffered for the same customer.
+     */
+    public synchronized long getCoalescedCount() {
+        return coalescedUpdates;
+    }
+
+    /**
+     * The number of automatic flushes that failed so far.
+     */
+    public synchronized long getFailedFlushCount() {
+        return failedFlushes;
+    }
+
+    /**
+     * Why the last automatic flush failed, or {@code null} if it succeeded.
+     */
+    public synchronized RuntimeException getLastFlushFailure() {
+        return lastFlushFailure;
+    }
+
+    @Override
+    public synchronized Customer updateCustomerRecord(Customer customer) {
+        buffer(customer, null);
+        return customer;
+    }
+
+    @Override
+    public synchronized Customer updateCustomerFields(Customer customer, Set<CustomerField> changedFields) {
+        buffer(customer, changedFields);
+        return customer;
+    }
+
+    @Override
+    public synchronized void updateCustomerRecords(Collection<Customer> customers) {
+        for (Customer customer : customers) {
+            buffer(customer, null);
+        }
+    }
+
+    private void buffer(Customer customer, Set<CustomerField> changedFields) {
+        if (closed) {
+            throw new IllegalStateException("Write-behind data layer is closed");
+        }
+        PendingUpdate update = pending.get(customer.getInternalId());
+        if (update == null) {
+            pending.put(customer.getInternalId(), new PendingUpdate(customer, changedFields));
+        } else {
+            update.merge(customer, changedFields);
+            coalescedUpdates++;
+        }
+        index(customer.getExternalId(), pendingByExternalId, customer);
+        index(customer.getMasterExternalId(), pendingByMasterExternalId, customer);
+        index(customer.getCompanyNumber(), pendingByCompanyNumber, customer);
+        if (pending.size() >= maxPendingUpdates) {
+            flushQuietly();
+        }
+    }
+
+    private static void index(String key, Map<String, Customer> index, Customer customer) {
+        if (key != null) {
+            index.put(key, customer);
+        }
+    }
+
+    @Override
+    public Customer createCustomerRecord(Customer customer) {
+        return customerDataLayer.createCustomerRecord(customer);
+    }
+
+    @Override
+    public void updateShoppingList(ShoppingList consumerShoppingList) {
+        customerDataLayer.updateShoppingList(consumerShoppingList);
+    }
+
+    @Override
+    public void updateShoppingLists(Collection<ShoppingList> consumerShoppingLists) {
+        customerDataLayer.updateShoppingLists(consumerShoppingLists);
+    }
+
+    @Override
+    public synchronized Customer findByExternalId(String externalId) {
+        return find(externalId, pendingByExternalId, Customer::getExternalId, customerDataLayer::findByExternalId);
+    }
+
+    @Override
+    public synchronized Customer findByMasterExternalId(String externalId) {
+        return find(externalId, pendingByMasterExternalId, Customer::getMasterExternalId, customerDataLayer::findByMasterExternalId);
+    }
+
+    @Override
+    public synchronized Customer findByCompanyNumber(String companyNumber) {
+        return find(companyNumber, pendingByCompanyNumber, Customer::getCompanyNumber, customerDataLayer::findByCompanyNumber);
+    }
+
+    @Override
+    public synchronized Map<String, Customer> findByExternalIds(Collection<String> externalIds) {
+        return findAll(externalIds, pendingByExternalId, Customer::getExternalId, customerDataLayer::findByExternalIds);
+    }
+
+    @Override
+    public synchronized Map<String, Customer> findByMasterExternalIds(Collection<String> externalIds) {
+        return findAll(externalIds, pendingByMasterExternalId, Customer::getMasterExternalId, customerDataLayer::findByMasterExternalIds);
+    }
+
+    @Override
+    public synchronized Map<String, Customer> findByCompanyNumbers(Collection<String> companyNumbers) {
+        return findAll(companyNumbers, pendingByCompanyNumber, Customer::getCompanyNumber, customerDataLayer::findByCompanyNumbers);
+    }
+
+    private Customer find(String key, Map<String, Customer> index, Function<Customer, String> keyOf, Function<String, Customer> finder) {
+        Customer buffered = findPending(key, index, keyOf);
+        if (buffered != null) {
+            return buffered;
+        }
+        return overlay(key, keyOf, finder.apply(key));
+    }
+
+    private Map<String, Customer> findAll(Collection<String> keys, Map<String, Customer> index, Function<Customer, String> keyOf,
+                                          Function<Collection<String>, Map<String, Customer>> finder) {
+        Map<String, Customer> customers = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String key : keys) {
+            Customer buffered = findPending(key, index, keyOf);
+            if (buffered != null) {
+                customers.put(key, buffered);
+            } else {
+                missing.add(key);
+            }
+        }
+        if (!missing.isEmpty()) {
+            finder.apply(missing).forEach((key, customer) -> {
+                Customer current = overlay(key, keyOf, customer);
+                if (current != null) customers.put(key, current);
+            });
+        }
+        return customers;
+    }
+
+    private Customer findPending(String key, Map<String, Customer> index, Function<Customer, String> keyOf) {
+        Customer buffered = key == null ? null : index.get(key);
+        if (buffered == null || !key.equals(keyOf.apply(buffered))) {
+            return null;
+        }
+        PendingUpdate update = pending.get(buffered.getInternalId());
+        return update != null && update.customer == buffered ? buffered : null;
+    }
+
+    /**
+     * Replaces a stored customer with its buffered version, which may no longer carry the key.
+     */
+    private Customer overlay(String key, Function<Customer, String> keyOf, Customer stored) {
+        if (stored == null) {
+            return null;
+        }
+        PendingUpdate update = pending.get(stored.getInternalId());
+        if (update == null) {
+            return stored;
+        }
+        return key.equals(keyOf.apply(update.customer)) ? update.customer : null;
+    }
+
+    private static final class PendingUpdate {
+        private Customer customer;
+        private Set<CustomerField> changedFields;
+
+        PendingUpdate(Customer customer, Set<CustomerField> changedFields) {
+            this.customer = customer;
+            if (changedFields != null) {
+                this.changedFields = EnumSet.noneOf(CustomerField.class);
+                this.changedFields.addAll(changedFields);
+            }
+        }
+
+        void merge(Customer newer, Set<CustomerField> newerFields) {
+            if (newer != customer) {
+                // a different copy of the same customer carries all its current state
+                changedFields = null;
+            } else if (changedFields != null && newerFields != null) {
+                changedFields.addAll(newerFields);
+            } else {
+                changedFields = null;
+            }
+            customer = newer;
+        }
+    }
+}
@@ -1,49 +1,135 @@
 package codingdojo.service;
 
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
 import codingdojo.exception.ConflictException;
+import codingdojo.metrics.Counter;
+import codingdojo.metrics.MetricsRegistry;
 import codingdojo.model.Customer;
+import codingdojo.model.CustomerChanges;
+import codingdojo.repository.AsyncCustomerDataLayer;
 import codingdojo.repository.CustomerDataAccess;
 import codingdojo.model.CustomerMatches;
+import codingdojo.model.enums.ConflictReason;
 import codingdojo.model.enums.CustomerType;
+import codingdojo.model.enums.MatchTerm;
 import codingdojo.model.ExternalCustomer;
 import codingdojo.model.ShoppingList;
 
 public class CustomerDataAccessService {
     private final CustomerDataAccess customerDataAccess;
+    private final Counter notACompanyConflicts;
+    private final Counter notAPersonConflicts;
+    private final Counter externalIdConflicts;
+    private final Counter rekeyed;
 
     public CustomerDataAccessService(CustomerDataAccess customerDataAccess) {
+        this(customerDataAccess, MetricsRegistry.NOOP);
+    }
+
+    public CustomerDataAccessService(CustomerDataAccess customerDataAccess, MetricsRegistry metricsRegistry) {
         this.customerDataAccess = customerDataAccess;
+        this.notACompanyConflicts = metricsRegistry.counter("customer.conflicts", "reason", "not-a-company");
+        this.notAPersonConflicts = metricsRegistry.counter("customer.conflicts", "reason", "not-a-person");
+        this.externalIdConflicts = metricsRegistry.counter("customer.conflicts", "reason", "external-id-mismatch");
+        this.rekeyed = metricsRegistry.counter("customer.rekeyed");
     }
 
-    public void updateConsumerShoppingList(ExternalCustomer externalCustomer) {
-        for (ShoppingList consumerShoppingList : externalCustomer.getShoppingLists()) {
-            this.customerDataAccess.updateShoppingList(consumerShoppingList);
+    public void updateShoppingLists(Collection<ShoppingList> shoppingLists) {
+        if (!shoppingLists.isEmpty()) {
+            this.customerDataAccess.updateShoppingLists(shoppingLists);
         }
     }
 
-    public Customer updateCustomer(Customer customer) {
-        return this.customerDataAccess.updateCustomerRecord(customer);
+    public CustomerMatches loadCustomer(ExternalCustomer externalCustomer) {
+        return loadCustomer(externalCustomer, new CustomerMatches());
     }
 
-    public CustomerMatches loadCustomer(ExternalCustomer externalCustomer) {
+    /**
+     * Like {@link #loadCustomer(ExternalCustomer)}, but resets and fills the given matches instead of
+     * allocating new ones.
+     */
+    public CustomerMatches loadCustomer(ExternalCustomer externalCustomer, CustomerMatches matches) {
+        return throwIfConflict(matchCustomer(externalCustomer, matches));
+    }
+
+    /**
+     * Looks the record up like {@link #loadCustomer(ExternalCustomer, CustomerMatches)}, but reports a
+     * conflict on the returned matches instead of throwing {@link ConflictException}.
+     */
+    public CustomerMatches matchCustomer(ExternalCustomer externalCustomer, CustomerMatches matches) {
+        return matchCustomer(externalCustomer, matches, false);
+    }
+
+    /**
+     * Like {@link #matchCustomer(ExternalCustomer, CustomerMatches)}; with {@code dropApplied} set, a
+     * record whose sequence number is not above the one last applied to the matched customer is marked
+     * stale on the matches, and the customer is left as it was rather than re-keyed.
+     */
+    public CustomerMatches matchCustomer(ExternalCustomer externalCustomer, CustomerMatches matches, boolean dropApplied) {
         if (externalCustomer.isCompany()) {
-            return loadCompany(externalCustomer);
+            return matchCompany(externalCustomer, matches, dropApplied);
         } else {
-            return loadPerson(externalCustomer);
+            return matchPerson(externalCustomer, matches, dropApplied);
         }
     }
 
-    public boolean isCustomerCreated(Customer customer) {
-        boolean created = customer.getInternalId() == null;
-        this.createOrUpdate(customer);
+    /**
+     * Like {@link #matchCustomer(ExternalCustomer, CustomerMatches, boolean)}, with the lookups
+     * issued against the asynchronous data layer.
+     */
+    public CompletableFuture<CustomerMatches> matchCustomerAsync(AsyncCustomerDataLayer asyncDataLayer, ExternalCustomer externalCustomer,
+                                                                 CustomerMatches matches, boolean dropApplied) {
+        if (externalCustomer.isCompany()) {
+            return customerDataAccess.loadCompanyCustomerAsync(asyncDataLayer, externalCustomer.getExternalId(),
+                    externalCustomer.getCompanyNumber(), matches)
+                .thenApply(companyMatches -> resolveCompany(externalCustomer, companyMatches, dropApplied));
+        } else {
+            return customerDataAccess.loadPersonCustomerAsync(asyncDataLayer, externalCustomer.getExternalId(), matches)
+                .thenApply(personMatches -> resolvePerson(externalCustomer, personMatches, dropApplied));
+        }
+    }
+
+    private static CustomerMatches throwIfConflict(CustomerMatches matches) {
+        if (matches.hasConflict()) {
+            throw new ConflictException(matches.getConflictReason(), matches.getConflictMessage());
+        }
+        return matches;
+    }
+
+    /**
+     * Creates a new customer or writes only the changed fields of an existing one, skipping the
+     * write entirely when nothing changed.
+     */
+    public boolean isCustomerCreated(CustomerChanges changes) {
+        boolean created = changes.getCustomer().getInternalId() == null;
+        this.createOrUpdate(changes);
         return created;
     }
 
-    public Customer createOrUpdate(Customer customer) {
+    public Customer createOrUpdate(CustomerChanges changes) {
+        Customer customer = changes.getCustomer();
         if (customer.getInternalId() == null) {
             return createCustomer(customer);
+        } else if (changes.isEmpty()) {
+            return customer;
+        } else {
+            return this.customerDataAccess.updateCustomerFields(customer, changes.getChangedFields());
+        }
+    }
+
+    /**
+     * Like {@link #createOrUpdate(CustomerChanges)}, with the write issued against the asynchronous data layer.
+     */
+    public CompletableFuture<Customer> createOrUpdateAsync(AsyncCustomerDataLayer asyncDataLayer, CustomerChanges changes) {
+        Customer customer = changes.getCustomer();
+        if (customer.getInternalId() == null) {
+            return asyncDataLayer.createCustomerRecord(customer);
+        } else if (changes.isEmpty()) {
+            return CompletableFuture.completedFuture(customer);
         } else {
-            return updateCustomer(customer);
+            return asyncDataLayer.updateCustomerFields(customer, changes.getChangedFields());
         }
     }
 
@@ -52,52 +138,94 @@ public class CustomerDataAccessService {
     }
 
     public CustomerMatches loadCompany(ExternalCustomer externalCustomer) {
+        return throwIfConflict(matchCompany(externalCustomer, new CustomerMatches(), false));
+    }
+
+    private CustomerMatches matchCompany(ExternalCustomer externalCustomer, CustomerMatches matches, boolean dropApplied) {
+        CustomerMatches customerMatches = customerDataAccess.loadCompanyCustomer(externalCustomer.getExternalId(),
+            externalCustomer.getCompanyNumber(), matches);
+        return resolveCompany(externalCustomer, customerMatches, dropApplied);
+    }
 
+    private CustomerMatches resolveCompany(ExternalCustomer externalCustomer, CustomerMatches customerMatches, boolean dropApplied) {
         final String externalId = externalCustomer.getExternalId();
         final String companyNumber = externalCustomer.getCompanyNumber();
 
-        CustomerMatches customerMatches = customerDataAccess.loadCompanyCustomer(externalId, companyNumber);
-
         if (customerMatches.getCustomer() != null && !CustomerType.COMPANY.equals(customerMatches.getCustomer().getCustomerType())) {
-            throw new ConflictException("Existing customer for externalCustomer " + externalId + " already exists and is not a company");
+            notACompanyConflicts.increment();
+            customerMatches.conflict(ConflictReason.NOT_A_COMPANY,
+                "Existing customer for externalCustomer " + externalId + " already exists and is not a company");
+            return customerMatches;
+        }
+        if (dropApplied && isApplied(externalCustomer, customerMatches.getCustomer())) {
+            customerMatches.setStale(true);
+            return customerMatches;
         }
 
-        if ("ExternalId".equals(customerMatches.getMatchTerm())) {
+        if (customerMatches.getMatchTerm() == MatchTerm.EXTERNAL_ID) {
             String customerCompanyNumber = customerMatches.getCustomer().getCompanyNumber();
             if (!companyNumber.equals(customerCompanyNumber)) {
                 customerMatches.addDuplicate(customerMatches.getCustomer());
                 customerMatches.setCustomer(null);
             }
-        } else if ("CompanyNumber".equals(customerMatches.getMatchTerm())) {
+        } else if (customerMatches.getMatchTerm() == MatchTerm.COMPANY_NUMBER) {
             String customerExternalId = customerMatches.getCustomer().getExternalId();
             if (customerExternalId != null && !externalId.equals(customerExternalId)) {
-                throw new ConflictException("Existing customer for externalCustomer " + companyNumber + " doesn't match external id " + externalId + " instead found " + customerExternalId );
+                externalIdConflicts.increment();
+                customerMatches.conflict(ConflictReason.EXTERNAL_ID_MISMATCH,
+                    "Existing customer for externalCustomer " + companyNumber + " doesn't match external id " + externalId + " instead found " + customerExternalId );
+                return customerMatches;
             }
-            Customer customer = customerMatches.getCustomer();
-            customer.setExternalId(externalId);
-            customer.setMasterExternalId(externalId);
+            rekey(customerMatches, externalId);
         }
 
         return customerMatches;
     }
 
     public CustomerMatches loadPerson(ExternalCustomer externalCustomer) {
-        final String externalId = externalCustomer.getExternalId();
+        return throwIfConflict(matchPerson(externalCustomer, new CustomerMatches(), false));
+    }
 
-        CustomerMatches customerMatches = customerDataAccess.loadPersonCustomer(externalId);
+    private CustomerMatches matchPerson(ExternalCustomer externalCustomer, CustomerMatches matches, boolean dropApplied) {
+        return resolvePerson(externalCustomer, customerDataAccess.loadPersonCustomer(externalCustomer.getExternalId(), matches), dropApplied);
+    }
+
+    private CustomerMatches resolvePerson(ExternalCustomer externalCustomer, CustomerMatches customerMatches, boolean dropApplied) {
+        final String externalId = externalCustomer.getExternalId();
 
         if (customerMatches.getCustomer() != null) {
             if (!CustomerType.PERSON.equals(customerMatches.getCustomer().getCustomerType())) {
-                throw new ConflictException("Existing customer for externalCustomer " + externalId + " already exists and is not a person");
+                notAPersonConflicts.increment();
+                customerMatches.conflict(ConflictReason.NOT_A_PERSON,
+                    "Existing customer for externalCustomer " + externalId + " already exists and is not a person");
+                return customerMatches;
+            }
+            if (dropApplied && isApplied(externalCustomer, customerMatches.getCustomer())) {
+                customerMatches.setStale(true);
+                return customerMatches;
             }
 
-            if (!"ExternalId".equals(customerMatches.getMatchTerm())) {
-                Customer customer = customerMatches.getCustomer();
-                customer.setExternalId(externalId);
-                customer.setMasterExternalId(externalId);
+            if (customerMatches.getMatchTerm() != MatchTerm.EXTERNAL_ID) {
+                rekey(customerMatches, externalId);
             }
         }
 
         return customerMatches;
     }
+
+    private static boolean isApplied(ExternalCustomer externalCustomer, Customer customer) {
+        Long sequenceNumber = externalCustomer.getSequenceNumber();
+        return sequenceNumber != null && customer != null && customer.getAppliedSequenceNumber() != null
+            && sequenceNumber <= customer.getAppliedSequenceNumber();
+    }
+
+    private void rekey(CustomerMatches customerMatches, String externalId) {
+        Customer customer = customerMatches.getCustomer();
+        if (!externalId.equals(customer.getExternalId()) || !externalId.equals(customer.getMasterExternalId())) {
+            customer.setExternalId(externalId);
+            customer.setMasterExternalId(externalId);
+            customerMatches.setCustomerRekeyed(true);
+            rekeyed.increment();
+        }
+    }
 }
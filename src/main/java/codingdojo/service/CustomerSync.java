@@ -1,37 +1,414 @@
 package codingdojo.service;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import codingdojo.exception.ConflictException;
 import codingdojo.mapper.CustomerMapper;
+import codingdojo.mapper.ExternalCustomerFingerprint;
+import codingdojo.metrics.Counter;
+import codingdojo.metrics.MetricsRegistry;
+import codingdojo.metrics.Timer;
 import codingdojo.model.Customer;
+import codingdojo.model.CustomerChanges;
 import codingdojo.model.CustomerMatches;
 import codingdojo.model.ExternalCustomer;
+import codingdojo.model.SyncResult;
+import codingdojo.model.SyncSummary;
+import codingdojo.model.enums.CustomerField;
+import codingdojo.model.enums.SyncOutcome;
+import codingdojo.repository.AsyncCustomerDataLayer;
+import codingdojo.repository.BatchCustomerDataLayer;
+import codingdojo.repository.CheckpointStore;
 import codingdojo.repository.CustomerDataAccess;
 import codingdojo.repository.CustomerDataLayer;
+import codingdojo.repository.FingerprintStore;
+import lombok.Builder;
 
 public class CustomerSync {
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private static final Set<CustomerField> BOOKKEEPING_FIELDS =
+        EnumSet.of(CustomerField.APPLIED_SEQUENCE_NUMBER, CustomerField.FINGERPRINT);
+
     private final CustomerMapper customerMapper= new CustomerMapper();
+    private final CustomerDataAccess customerDataAccess;
     private final CustomerDataAccessService customerDatabaseService;
+    private final FingerprintStore fingerprintStore;
+    private final MetricsRegistry metricsRegistry;
+    private final boolean stacklessConflicts;
+    private final boolean deltaSync;
+    private final AsyncCustomerDataLayer asyncDataLayer;
+    private final CheckpointStore checkpointStore;
+    private final Long resumeAfter;
+    private Long committedSequenceNumber;
+    private final Timer lookupTimer;
+    private final Timer mapTimer;
+    private final Timer writeTimer;
+    private final Counter duplicatesUpdated;
+    private final Map<SyncOutcome, Counter> outcomes = new EnumMap<>(SyncOutcome.class);
 
     public CustomerSync(CustomerDataLayer customerDataLayer) {
         this(new CustomerDataAccess(customerDataLayer));
     }
 
     public CustomerSync(CustomerDataAccess db) {
-        this.customerDatabaseService = new CustomerDataAccessService(db);
+        this(null, db, null, null, false, false, null, null);
     }
 
+    /**
+     * @param fingerprintStore   optional; skips a delivery identical to the last one synced for its external
+     *                           id. Needs durable writes, unlike {@link codingdojo.repository.WriteBehindCustomerDataLayer}
+     * @param metricsRegistry    optional; times the sync stages and data layer calls and counts outcomes
+     * @param stacklessConflicts throws {@link ConflictException}s without a stack trace
+     * @param deltaSync          drops records whose sequence number was already applied as {@link SyncOutcome#STALE}
+     * @param checkpointStore    optional, delta sync only; skips records up to the committed sequence number
+     *                           and commits each chunk {@link #syncBatch} completes. Needs an in-order feed
+     *                           and durable writes
+     * @param asyncDataLayer     optional; the data layer {@link #syncAsync} runs against
+     */
+    @Builder
+    private CustomerSync(CustomerDataLayer customerDataLayer, CustomerDataAccess customerDataAccess,
+                         FingerprintStore fingerprintStore, MetricsRegistry metricsRegistry, boolean stacklessConflicts,
+                         boolean deltaSync, CheckpointStore checkpointStore, AsyncCustomerDataLayer asyncDataLayer) {
+        this.stacklessConflicts = stacklessConflicts;
+        this.asyncDataLayer = asyncDataLayer;
+        this.deltaSync = deltaSync;
+        this.checkpointStore = deltaSync ? checkpointStore : null;
+        this.resumeAfter = this.checkpointStore != null ? this.checkpointStore.load() : null;
+        this.committedSequenceNumber = resumeAfter;
+        this.metricsRegistry = metricsRegistry != null ? metricsRegistry : MetricsRegistry.NOOP;
+        this.customerDataAccess = customerDataAccess != null ? customerDataAccess
+            : new CustomerDataAccess(customerDataLayer, this.metricsRegistry);
+        this.customerDatabaseService = new CustomerDataAccessService(this.customerDataAccess, this.metricsRegistry);
+        this.fingerprintStore = fingerprintStore;
+        this.lookupTimer = this.metricsRegistry.timer("customer.sync.stage", "stage", "lookup");
+        this.mapTimer = this.metricsRegistry.timer("customer.sync.stage", "stage", "map");
+        this.writeTimer = this.metricsRegistry.timer("customer.sync.stage", "stage", "write");
+        this.duplicatesUpdated = this.metricsRegistry.counter("customer.sync.duplicates");
+        for (SyncOutcome outcome : SyncOutcome.values()) {
+            outcomes.put(outcome, this.metricsRegistry.counter("customer.sync.outcome", "outcome", outcome.name().toLowerCase()));
+        }
+    }
+
+    /**
+     * Syncs one record and tells whether it created a customer.
+     *
+     * @throws ConflictException if the record conflicts with the customer it matched
+     */
     public boolean syncWithDataLayer(ExternalCustomer externalCustomer) {
-        CustomerMatches customerMatches = customerDatabaseService.loadCustomer(externalCustomer);
-        Customer customer = customerMapper.toCustomerWithExternalData(externalCustomer, customerMatches.getCustomer());
+        SyncResult result = trySync(externalCustomer);
+        if (result.isConflict()) {
+            throw stacklessConflicts ? ConflictException.stackless(result.conflictReason(), result.conflictMessage())
+                : new ConflictException(result.conflictReason(), result.conflictMessage());
+        }
+        return result.outcome() == SyncOutcome.CREATED;
+    }
+
+    /**
+     * Syncs one record and reports a conflict in the result instead of throwing.
+     */
+    public SyncResult trySync(ExternalCustomer externalCustomer) {
+        PendingSync pending = map(lookup(customerDatabaseService, externalCustomer, new CustomerMatches()));
+        SyncResult result = write(customerDatabaseService, pending);
+        recordFingerprint(pending);
+        return result;
+    }
+
+    /**
+     * Syncs one record without blocking on the data layer, like {@link #trySync}: lookups that don't
+     * depend on each other are issued together, and so are the writes of the duplicates once the
+     * customer and its shopping lists are written. Records matching the same customer must not be in
+     * flight at the same time.
+     * Without an {@code asyncDataLayer} the record is synced on the calling thread.
+     */
+    public CompletableFuture<SyncResult> syncAsync(ExternalCustomer externalCustomer) {
+        if (asyncDataLayer == null) {
+            return CompletableFuture.completedFuture(trySync(externalCustomer));
+        }
+        PendingSync pending = beginLookup(externalCustomer);
+        if (pending.isResolved()) {
+            return CompletableFuture.completedFuture(pending.result);
+        }
+        return customerDatabaseService.matchCustomerAsync(asyncDataLayer, externalCustomer, new CustomerMatches(), isDeltaRecord(externalCustomer))
+            .thenApply(matches -> map(completeLookup(pending, matches)))
+            .thenCompose(this::writeAsync);
+    }
+
+    /**
+     * Syncs all records in chunks of {@link #DEFAULT_BATCH_SIZE}, see {@link #syncBatch(List)}.
+     */
+    public SyncSummary syncAll(Iterable<ExternalCustomer> externalCustomers) {
+        return syncAll(externalCustomers, DEFAULT_BATCH_SIZE);
+    }
+
+    public SyncSummary syncAll(Iterable<ExternalCustomer> externalCustomers, int batchSize) {
+        SyncSummary summary = new SyncSummary();
+        List<ExternalCustomer> chunk = new ArrayList<>(batchSize);
+        for (ExternalCustomer externalCustomer : externalCustomers) {
+            chunk.add(externalCustomer);
+            if (chunk.size() == batchSize) {
+                summary.addAll(syncBatch(chunk));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            summary.addAll(syncBatch(chunk));
+        }
+        return summary;
+    }
+
+    /**
+     * Syncs the records as one chunk: lookups for the whole chunk are resolved up front and updates
+     * are written together at the end. Conflicts are reported in the summary instead of aborting the chunk.
+     * Records are synced one after the other, so they share a single {@link CustomerMatches}. Fingerprints
+     * and the checkpoint are only recorded once the chunk's updates are flushed. A record that fails
+     * aborts the chunk without flushing its buffered updates, and its exception is rethrown as is.
+     */
+    public SyncSummary syncBatch(List<ExternalCustomer> externalCustomers) {
+        BatchCustomerDataLayer batch = customerDataAccess.batch(externalCustomers);
+        CustomerDataAccessService batchService = new CustomerDataAccessService(customerDataAccess.withDataLayer(batch), metricsRegistry);
+        CustomerMatches matches = new CustomerMatches();
+        SyncSummary summary = new SyncSummary();
+        List<PendingSync> written = new ArrayList<>(externalCustomers.size());
+        for (ExternalCustomer externalCustomer : externalCustomers) {
+            PendingSync pending = map(lookup(batchService, externalCustomer, matches));
+            summary.add(write(batchService, pending));
+            written.add(pending);
+        }
+        batch.flush();
+        written.forEach(this::recordFingerprint);
+        commitCheckpoint(externalCustomers);
+        return summary;
+    }
+
+    private void commitCheckpoint(List<ExternalCustomer> externalCustomers) {
+        if (checkpointStore == null) {
+            return;
+        }
+        Long highest = null;
+        for (ExternalCustomer externalCustomer : externalCustomers) {
+            Long sequenceNumber = externalCustomer.getSequenceNumber();
+            if (sequenceNumber != null && (highest == null || sequenceNumber > highest)) {
+                highest = sequenceNumber;
+            }
+        }
+        if (highest != null) {
+            commitCheckpoint(highest);
+        }
+    }
+
+    private synchronized void commitCheckpoint(long sequenceNumber) {
+        if (committedSequenceNumber == null || sequenceNumber > committedSequenceNumber) {
+            checkpointStore.commit(sequenceNumber);
+            committedSequenceNumber = sequenceNumber;
+        }
+    }
+
+    PendingSync lookup(ExternalCustomer externalCustomer) {
+        return lookup(customerDatabaseService, externalCustomer, new CustomerMatches());
+    }
+
+    SyncResult write(PendingSync pending) {
+        SyncResult result = write(customerDatabaseService, pending);
+        recordFingerprint(pending);
+        return result;
+    }
+
+    // only records whose changes went through the write stage, and only once they are written
+    private void recordFingerprint(PendingSync pending) {
+        if (pending.fingerprint != null && pending.changes != null) {
+            fingerprintStore.record(pending.externalCustomer.getExternalId(), pending.fingerprint);
+        }
+    }
+
+    /**
+     * First stage: reads everything the record is matched against into {@code matches}, which is reset
+     * first. A record that can't be matched leaves the stage resolved as a conflict.
+     */
+    private PendingSync lookup(CustomerDataAccessService service, ExternalCustomer externalCustomer, CustomerMatches matches) {
+        long start = System.nanoTime();
+        try {
+            return doLookup(service, externalCustomer, matches);
+        } finally {
+            lookupTimer.record(System.nanoTime() - start);
+        }
+    }
+
+    private PendingSync doLookup(CustomerDataAccessService service, ExternalCustomer externalCustomer, CustomerMatches matches) {
+        PendingSync pending = beginLookup(externalCustomer);
+        if (pending.isResolved()) {
+            return pending;
+        }
+        return completeLookup(pending, service.matchCustomer(externalCustomer, matches, isDeltaRecord(externalCustomer)));
+    }
+
+    private boolean isDeltaRecord(ExternalCustomer externalCustomer) {
+        return deltaSync && externalCustomer.getSequenceNumber() != null;
+    }
+
+    // resolves what can be told without the data layer: records behind the checkpoint and repeated deliveries
+    private PendingSync beginLookup(ExternalCustomer externalCustomer) {
+        boolean deltaRecord = isDeltaRecord(externalCustomer);
+        if (deltaRecord && resumeAfter != null && externalCustomer.getSequenceNumber() <= resumeAfter) {
+            return stale(externalCustomer);
+        }
+
+        Long fingerprint = null;
+        if (fingerprintStore != null && externalCustomer.getExternalId() != null) {
+            fingerprint = ExternalCustomerFingerprint.of(externalCustomer);
+            if (!deltaRecord && fingerprint.equals(fingerprintStore.find(externalCustomer.getExternalId()))) {
+                PendingSync acknowledged = new PendingSync(externalCustomer, fingerprint);
+                acknowledged.result = SyncResult.unchanged(externalCustomer);
+                outcomes.get(SyncOutcome.UNCHANGED).increment();
+                return acknowledged;
+            }
+        }
+        return new PendingSync(externalCustomer, fingerprint);
+    }
+
+    private PendingSync completeLookup(PendingSync pending, CustomerMatches matches) {
+        ExternalCustomer externalCustomer = pending.externalCustomer;
+        pending.matches = matches;
+        if (matches.hasConflict()) {
+            pending.result = SyncResult.conflict(externalCustomer, matches.getConflictReason(), matches.getConflictMessage());
+            outcomes.get(SyncOutcome.CONFLICT).increment();
+        } else if (matches.isStale()) {
+            return stale(externalCustomer);
+        }
+        return pending;
+    }
+
+    private PendingSync stale(ExternalCustomer externalCustomer) {
+        PendingSync stale = new PendingSync(externalCustomer, null);
+        stale.result = SyncResult.stale(externalCustomer);
+        outcomes.get(SyncOutcome.STALE).increment();
+        return stale;
+    }
+
+    /**
+     * Second stage: works out the changes in memory, without touching the data layer.
+     */
+    PendingSync map(PendingSync pending) {
+        if (pending.isResolved()) {
+            return pending;
+        }
+        long start = System.nanoTime();
+        try {
+            pending.changes = toChanges(pending);
+        } finally {
+            mapTimer.record(System.nanoTime() - start);
+        }
+        return pending;
+    }
 
-        customerMatches.getDuplicates().forEach(
-            duplicate -> updateDuplicate(externalCustomer, duplicate)
-        );
+    private CustomerChanges toChanges(PendingSync pending) {
+        CustomerChanges changes = customerMapper.toCustomerChanges(pending.externalCustomer, pending.matches.getCustomer());
+        if (pending.matches.isCustomerRekeyed()) {
+            changes.markChanged(CustomerField.EXTERNAL_ID);
+            changes.markChanged(CustomerField.MASTER_EXTERNAL_ID);
+        }
+        if (pending.fingerprint != null && !pending.fingerprint.equals(changes.getCustomer().getFingerprint())) {
+            changes.getCustomer().setFingerprint(pending.fingerprint);
+            changes.markChanged(CustomerField.FINGERPRINT);
+        }
+        Long sequenceNumber = pending.externalCustomer.getSequenceNumber();
+        if (sequenceNumber != null && !sequenceNumber.equals(changes.getCustomer().getAppliedSequenceNumber())) {
+            changes.getCustomer().setAppliedSequenceNumber(sequenceNumber);
+            changes.markChanged(CustomerField.APPLIED_SEQUENCE_NUMBER);
+        }
+        return changes;
+    }
+
+    /**
+     * Last stage: writes the customer itself, then its new shopping lists, then the duplicates.
+     */
+    private SyncResult write(CustomerDataAccessService service, PendingSync pending) {
+        if (pending.isResolved()) {
+            return pending.result;
+        }
+        long start = System.nanoTime();
+        boolean created;
+        try {
+            created = writeChanges(service, pending);
+        } finally {
+            writeTimer.record(System.nanoTime() - start);
+        }
+        return complete(pending, created);
+    }
+
+    private boolean writeChanges(CustomerDataAccessService service, PendingSync pending) {
+        ExternalCustomer externalCustomer = pending.externalCustomer;
+        CustomerChanges changes = pending.changes;
+
+        boolean created = service.isCustomerCreated(changes);
+        service.updateShoppingLists(changes.getAddedShoppingLists());
+        pending.matches.forEachDuplicate(duplicate -> {
+            if (!isSameCustomer(duplicate, changes.getCustomer())) {
+                updateDuplicate(service, externalCustomer, duplicate);
+            }
+        });
+        return created;
+    }
+
+    // the customer matched by external id can come back as its own duplicate by master id
+    private static boolean isSameCustomer(Customer duplicate, Customer customer) {
+        return duplicate == customer || duplicate.getInternalId() != null && duplicate.getInternalId().equals(customer.getInternalId());
+    }
+
+    private CompletableFuture<SyncResult> writeAsync(PendingSync pending) {
+        if (pending.isResolved()) {
+            return CompletableFuture.completedFuture(pending.result);
+        }
+        ExternalCustomer externalCustomer = pending.externalCustomer;
+        CustomerChanges changes = pending.changes;
+        boolean created = changes.getCustomer().getInternalId() == null;
+
+        // same order as write(): a new customer's row must exist before its shopping lists, and the
+        // duplicates only go out once the customer is written
+        CompletableFuture<?> written = customerDatabaseService.createOrUpdateAsync(asyncDataLayer, changes);
+        if (!changes.getAddedShoppingLists().isEmpty()) {
+            written = written.thenCompose(customer -> asyncDataLayer.updateShoppingLists(changes.getAddedShoppingLists()));
+        }
+        return written
+            .thenCompose(previous -> {
+                List<CompletableFuture<?>> duplicates = new ArrayList<>();
+                pending.matches.forEachDuplicate(duplicate -> {
+                    if (!isSameCustomer(duplicate, changes.getCustomer())) {
+                        duplicates.add(customerDatabaseService
+                            .createOrUpdateAsync(asyncDataLayer, customerMapper.toDuplicateChanges(externalCustomer, duplicate))
+                            .thenRun(duplicatesUpdated::increment));
+                    }
+                });
+                return CompletableFuture.allOf(duplicates.toArray(new CompletableFuture<?>[0]));
+            })
+            .thenApply(duplicatesWritten -> {
+                SyncResult result = complete(pending, created);
+                recordFingerprint(pending);
+                return result;
+            });
+    }
+
+    private SyncResult complete(PendingSync pending, boolean created) {
+        ExternalCustomer externalCustomer = pending.externalCustomer;
+        pending.result = created ? SyncResult.created(externalCustomer)
+            : isUnchanged(pending.changes) ? SyncResult.unchanged(externalCustomer) : SyncResult.updated(externalCustomer);
+        outcomes.get(pending.result.outcome()).increment();
+        return pending.result;
+    }
 
-        customerDatabaseService.updateConsumerShoppingList(externalCustomer);
-        return customerDatabaseService.isCustomerCreated(customer);
+    // a record that only advances the sequence number or fingerprint leaves the customer's data as it was
+    private static boolean isUnchanged(CustomerChanges changes) {
+        return BOOKKEEPING_FIELDS.containsAll(changes.getChangedFields());
     }
 
-    private void updateDuplicate(ExternalCustomer externalCustomer, Customer duplicate) {
-        customerDatabaseService.createOrUpdate(customerMapper.toDuplicateCustomer(externalCustomer, duplicate));
+    private void updateDuplicate(CustomerDataAccessService service, ExternalCustomer externalCustomer, Customer duplicate) {
+        service.createOrUpdate(customerMapper.toDuplicateChanges(externalCustomer, duplicate));
+        duplicatesUpdated.increment();
     }
 }
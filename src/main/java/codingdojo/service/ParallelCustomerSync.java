@@ -0,0 +1,177 @@
+package codingdojo.service;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.SyncResult;
+import codingdojo.model.SyncSummary;
+
+/**
+ * Runs {@link CustomerSync} for many records concurrently.
+ * <p>
+ * Records that share an external id or company number are serialized through striped locks, because
+ * the customers they match are mutated in place while being synced. Only the record's own keys are
+ * locked: a duplicate, found through a master external id equal to the record's external id, is also
+ * updated, but a record in the same feed that matches that duplicate by its own external id holds a
+ * different stripe and may update it at the same time. Feeds where duplicates are synced alongside
+ * their masters should go through {@link CustomerSync#syncAll} instead. The underlying
+ * {@link codingdojo.repository.CustomerDataLayer} must be thread-safe.
+ * <p>
+ * At most {@code maxConcurrency} records are in flight at a time; the caller's iteration blocks until
+ * a slot frees up, so a slow data layer pushes back on the producer instead of queueing the whole feed.
+ */
+public class ParallelCustomerSync {
+    private static final int STRIPES_PER_SLOT = 64;
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutorFactory();
+
+    private final CustomerSync customerSync;
+    private final Supplier<ExecutorService> executorFactory;
+    private final int maxConcurrency;
+    private final ReentrantLock[] stripes;
+
+    public ParallelCustomerSync(CustomerSync customerSync) {
+        this(customerSync, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelCustomerSync(CustomerSync customerSync, int parallelism) {
+        this(customerSync, () -> Executors.newFixedThreadPool(parallelism), parallelism);
+    }
+
+    public ParallelCustomerSync(CustomerSync customerSync, Supplier<ExecutorService> executorFactory, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+        }
+        this.customerSync = customerSync;
+        this.executorFactory = executorFactory;
+        this.maxConcurrency = maxConcurrency;
+        this.stripes = new ReentrantLock[Integer.highestOneBit(maxConcurrency * STRIPES_PER_SLOT - 1) << 1];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Runs each record on its own virtual thread, with at most {@code maxConcurrency} in flight.
+     * Suited to blocking data layers such as JDBC adapters, where the limit is the number of
+     * outstanding round trips rather than cores. On runtimes without virtual threads (before Java 21)
+     * this falls back to a fixed pool of {@code maxConcurrency} platform threads.
+     */
+    public static ParallelCustomerSync withVirtualThreads(CustomerSync customerSync, int maxConcurrency) {
+        return new ParallelCustomerSync(customerSync,
+            () -> virtualThreadExecutorOr(() -> Executors.newFixedThreadPool(maxConcurrency)),
+            maxConcurrency);
+    }
+
+    public static boolean virtualThreadsAvailable() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    /**
+     * Syncs all records and returns their results in input order.
+     */
+    public SyncSummary syncAll(Iterable<ExternalCustomer> externalCustomers) {
+        ExecutorService executor = executorFactory.get();
+        Semaphore slots = new Semaphore(maxConcurrency);
+        try {
+            List<Future<SyncResult>> futures = new ArrayList<>();
+            for (ExternalCustomer externalCustomer : externalCustomers) {
+                acquire(slots);
+                futures.add(executor.submit(() -> {
+                    try {
+                        return syncLocked(externalCustomer);
+                    } finally {
+                        slots.release();
+                    }
+                }));
+            }
+            SyncSummary summary = new SyncSummary();
+            for (Future<SyncResult> future : futures) {
+                summary.add(await(future));
+            }
+            return summary;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    SyncResult syncLocked(ExternalCustomer externalCustomer) {
+        String externalId = externalCustomer.getExternalId();
+        String companyNumber = externalCustomer.getCompanyNumber();
+        int first = stripe(externalId != null ? externalId : companyNumber);
+        int second = companyNumber != null ? stripe(companyNumber) : first;
+        // always lock in ascending stripe order so two records can't deadlock each other
+        ReentrantLock lower = stripes[Math.min(first, second)];
+        ReentrantLock upper = stripes[Math.max(first, second)];
+        lower.lock();
+        try {
+            if (upper != lower) upper.lock();
+            try {
+                return customerSync.trySync(externalCustomer);
+            } finally {
+                if (upper != lower) upper.unlock();
+            }
+        } finally {
+            lower.unlock();
+        }
+    }
+
+    private int stripe(String key) {
+        if (key == null) {
+            return 0;
+        }
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (stripes.length - 1);
+    }
+
+    private static void acquire(Semaphore slots) {
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a sync slot", e);
+        }
+    }
+
+    private static SyncResult await(Future<SyncResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for sync", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static ExecutorService virtualThreadExecutorOr(Supplier<ExecutorService> fallback) {
+        if (NEW_VIRTUAL_THREAD_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // preview-only runtimes (Java 19/20) refuse unless started with --enable-preview
+            }
+        }
+        return fallback.get();
+    }
+
+    // looked up reflectively so the project keeps compiling for Java 17
+    private static Method findVirtualThreadExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package codingdojo.service;
+
+import codingdojo.model.CustomerChanges;
+import codingdojo.model.CustomerMatches;
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.SyncResult;
+
+/**
+ * A record on its way through the lookup, map and write stages of {@link CustomerSync}.
+ * Carries a result as soon as one is known, in which case the later stages pass it through.
+ */
+final class PendingSync {
+    final ExternalCustomer externalCustomer;
+    final Long fingerprint;
+    CustomerMatches matches;
+    CustomerChanges changes;
+    SyncResult result;
+
+    PendingSync(ExternalCustomer externalCustomer, Long fingerprint) {
+        this.externalCustomer = externalCustomer;
+        this.fingerprint = fingerprint;
+    }
+
+    boolean isResolved() {
+        return result != null;
+    }
+}
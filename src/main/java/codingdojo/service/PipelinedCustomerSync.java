@@ -0,0 +1,196 @@
+package codingdojo.service;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.SyncSummary;
+
+/**
+ * Runs the lookup, map and write stages of {@link CustomerSync} on separate threads connected by
+ * bounded queues, so the lookups for the next records overlap with the writes of the previous ones.
+ * Worth it when every data layer call is a round trip to a remote database.
+ * <p>
+ * A record isn't looked up while an earlier record with the same external id or company number is
+ * still on its way to the write stage, so records for the same customer are applied in feed order.
+ * Results are returned in input order. The underlying {@link codingdojo.repository.CustomerDataLayer}
+ * must be thread-safe, since lookups and writes run concurrently.
+ */
+public class PipelinedCustomerSync {
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private static final PendingSync END = new PendingSync(null, null);
+
+    private final CustomerSync customerSync;
+    private final int queueCapacity;
+
+    public PipelinedCustomerSync(CustomerSync customerSync) {
+        this(customerSync, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public PipelinedCustomerSync(CustomerSync customerSync, int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be positive: " + queueCapacity);
+        }
+        this.customerSync = customerSync;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Syncs all records and returns their results in input order. The lookup stage runs on the
+     * calling thread, so iterating the input is paced by the slowest stage.
+     */
+    public SyncSummary syncAll(Iterable<ExternalCustomer> externalCustomers) {
+        Run run = new Run();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> mapStage = executor.submit(run::map);
+            Future<SyncSummary> writeStage = executor.submit(run::write);
+            try {
+                for (ExternalCustomer externalCustomer : externalCustomers) {
+                    if (run.failure != null) {
+                        break;
+                    }
+                    run.lookup(externalCustomer);
+                }
+            } catch (RuntimeException e) {
+                run.fail(e);
+            } finally {
+                put(run.mapQueue, END);
+            }
+            await(mapStage);
+            SyncSummary summary = await(writeStage);
+            if (run.failure != null) {
+                throw run.failure;
+            }
+            return summary;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private final class Run {
+        final BlockingQueue<PendingSync> mapQueue = new ArrayBlockingQueue<>(queueCapacity);
+        final BlockingQueue<PendingSync> writeQueue = new ArrayBlockingQueue<>(queueCapacity);
+        final InFlightKeys inFlight = new InFlightKeys();
+        volatile RuntimeException failure;
+
+        void lookup(ExternalCustomer externalCustomer) {
+            inFlight.acquire(externalCustomer);
+            PendingSync pending;
+            try {
+                pending = customerSync.lookup(externalCustomer);
+            } catch (RuntimeException e) {
+                inFlight.release(externalCustomer);
+                throw e;
+            }
+            put(mapQueue, pending);
+        }
+
+        void map() {
+            for (PendingSync pending = take(mapQueue); pending != END; pending = take(mapQueue)) {
+                if (failure != null) {
+                    // keep draining so the lookup stage never blocks on a dead pipeline
+                    inFlight.release(pending.externalCustomer);
+                    continue;
+                }
+                try {
+                    put(writeQueue, customerSync.map(pending));
+                } catch (RuntimeException e) {
+                    inFlight.release(pending.externalCustomer);
+                    fail(e);
+                }
+            }
+            put(writeQueue, END);
+        }
+
+        SyncSummary write() {
+            SyncSummary summary = new SyncSummary();
+            for (PendingSync pending = take(writeQueue); pending != END; pending = take(writeQueue)) {
+                try {
+                    if (failure == null) {
+                        summary.add(customerSync.write(pending));
+                    }
+                } catch (RuntimeException e) {
+                    fail(e);
+                } finally {
+                    inFlight.release(pending.externalCustomer);
+                }
+            }
+            return summary;
+        }
+
+        synchronized void fail(RuntimeException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * The external ids and company numbers of records between the lookup and the write stage.
+     */
+    private static final class InFlightKeys {
+        private final Set<String> externalIds = new HashSet<>();
+        private final Set<String> companyNumbers = new HashSet<>();
+
+        synchronized void acquire(ExternalCustomer externalCustomer) {
+            String externalId = externalCustomer.getExternalId();
+            String companyNumber = externalCustomer.getCompanyNumber();
+            while (externalIds.contains(externalId) || companyNumbers.contains(companyNumber)) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for an earlier record", e);
+                }
+            }
+            if (externalId != null) externalIds.add(externalId);
+            if (companyNumber != null) companyNumbers.add(companyNumber);
+        }
+
+        synchronized void release(ExternalCustomer externalCustomer) {
+            externalIds.remove(externalCustomer.getExternalId());
+            companyNumbers.remove(externalCustomer.getCompanyNumber());
+            notifyAll();
+        }
+    }
+
+    private static void put(BlockingQueue<PendingSync> queue, PendingSync pending) {
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while handing over a record", e);
+        }
+    }
+
+    private static PendingSync take(BlockingQueue<PendingSync> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a record", e);
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for sync", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
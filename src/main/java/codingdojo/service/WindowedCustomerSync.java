@@ -0,0 +1,237 @@
+package codingdojo.service;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import codingdojo.mapper.ExternalCustomerMerger;
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.SyncSummary;
+
+/**
+ * Collects records for a window of time and syncs one merged record per customer at the end of it.
+ * <p>
+ * A record joins the pending customer that shares its external id or, failing that, its company
+ * number, unless that customer carries a different external id. Each customer's records are kept
+ * until the window is synced and then merged with {@link ExternalCustomerMerger}, so a burst of
+ * updates for one customer costs a single lookup and write. The window is synced with
+ * {@link CustomerSync#syncAll(Iterable)} every {@code window}, once {@code maxPendingCustomers}
+ * customers are pending, on {@link #flush()} and on {@link #close()}; records submitted meanwhile go
+ * into the next window.
+ * <p>
+ * A failed flush puts its records back in front of the newer ones, to be retried on the next flush;
+ * failures show in {@link #getFailedFlushCount()} and {@link #getLastFlushFailure()}. While the last
+ * flush failed and {@code maxPendingCustomers} customers are pending, new records are rejected
+ * rather than piling up.
+ * <p>
+ * Records are only synced once flushed; {@link #close()} must be called before shutdown. All methods
+ * are thread-safe.
+ */
+public class WindowedCustomerSync implements Closeable {
+
+    private final CustomerSync customerSync;
+    private final int maxPendingCustomers;
+    private final ScheduledExecutorService scheduler;
+    private final Object flushLock = new Object();
+    private final SyncSummary summary = SyncSummary.conflictsOnly();
+    private Window pending = new Window();
+    private long mergedRecords;
+    private long failedFlushes;
+    private RuntimeException lastFlushFailure;
+    private boolean closed;
+
+    public WindowedCustomerSync(CustomerSync customerSync, Duration window, int maxPendingCustomers) {
+        if (maxPendingCustomers < 1) {
+            throw new IllegalArgumentException("maxPendingCustomers must be positive: " + maxPendingCustomers);
+        }
+        if (window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("window must be positive: " + window);
+        }
+        this.customerSync = customerSync;
+        this.maxPendingCustomers = maxPendingCustomers;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "customer-sync-window");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long windowNanos = window.toNanos();
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, windowNanos, windowNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Adds the record to the current window and syncs the window once it is full.
+     *
+     * @throws IllegalStateException if closed, or if the window is full and failed to sync last time
+     */
+    public void submit(ExternalCustomer externalCustomer) {
+        boolean full;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Windowed sync is closed");
+            }
+            if (lastFlushFailure != null && pending.size() >= maxPendingCustomers) {
+                throw new IllegalStateException("Windowed sync is full and its last flush failed", lastFlushFailure);
+            }
+            if (pending.add(externalCustomer)) {
+                mergedRecords++;
+            }
+            full = pending.size() >= maxPendingCustomers;
+        }
+        if (full) {
+            flushQuietly();
+        }
+    }
+
+    /**
+     * Syncs the current window and returns its summary once it is synced.
+     */
+    public SyncSummary flush() {
+        synchronized (flushLock) {
+            Window window;
+            synchronized (this) {
+                if (pending.size() == 0) {
+                    return new SyncSummary();
+                }
+                window = pending;
+                pending = new Window();
+            }
+            SyncSummary windowSummary;
+            try {
+                windowSummary = customerSync.syncAll(window.merged());
+            } catch (RuntimeException e) {
+                requeue(window, e);
+                throw e;
+            }
+            synchronized (this) {
+                summary.addAll(windowSummary);
+                lastFlushFailure = null;
+            }
+            return windowSummary;
+        }
+    }
+
+    private synchronized void requeue(Window window, RuntimeException failure) {
+        pending.forEachRecord(window::add);
+        pending = window;
+        failedFlushes++;
+        lastFlushFailure = failure;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // the records are back in the window and the next flush retries them
+        }
+    }
+
+    /**
+     * Stops the background flushing and syncs whatever is still pending. Later records are rejected.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        synchronized (this) {
+            closed = true;
+        }
+        flush();
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * The number of records that were merged into a record already pending for the same customer.
+     */
+    public synchronized long getMergedCount() {
+        return mergedRecords;
+    }
+
+    /**
+     * The number of flushes that failed so far.
+     */
+    public synchronized long getFailedFlushCount() {
+        return failedFlushes;
+    }
+
+    /**
+     * Why the last flush failed, or {@code null} if it succeeded.
+     */
+    public synchronized RuntimeException getLastFlushFailure() {
+        return lastFlushFailure;
+    }
+
+    /**
+     * Counts of every outcome synced so far, keeping the results of conflicts only.
+     */
+    public synchronized SyncSummary getSummary() {
+        SyncSummary copy = SyncSummary.conflictsOnly();
+        copy.addAll(summary);
+        return copy;
+    }
+
+    /**
+     * The records of one window, grouped per customer in the order the customers first appeared.
+     * Records with neither key can't be grouped and are synced on their own.
+     */
+    private static final class Window {
+        private final List<List<ExternalCustomer>> customers = new ArrayList<>();
+        private final List<String> externalIds = new ArrayList<>();
+        private final Map<String, Integer> byExternalId = new HashMap<>();
+        private final Map<String, Integer> byCompanyNumber = new HashMap<>();
+
+        /**
+         * Returns whether the record joined a customer already pending.
+         */
+        boolean add(ExternalCustomer externalCustomer) {
+            String externalId = externalCustomer.getExternalId();
+            String companyNumber = externalCustomer.getCompanyNumber();
+            Integer customer = externalId != null ? byExternalId.get(externalId) : null;
+            if (customer == null && companyNumber != null) {
+                Integer byCompany = byCompanyNumber.get(companyNumber);
+                if (byCompany != null && (externalId == null || externalIds.get(byCompany) == null)) {
+                    customer = byCompany;
+                }
+            }
+            boolean joined = customer != null;
+            if (!joined) {
+                customer = customers.size();
+                customers.add(new ArrayList<>());
+                externalIds.add(null);
+            }
+            customers.get(customer).add(externalCustomer);
+            if (externalId != null && externalIds.get(customer) == null) {
+                externalIds.set(customer, externalId);
+                byExternalId.put(externalId, customer);
+            }
+            if (companyNumber != null) {
+                byCompanyNumber.putIfAbsent(companyNumber, customer);
+            }
+            return joined;
+        }
+
+        int size() {
+            return customers.size();
+        }
+
+        List<ExternalCustomer> merged() {
+            List<ExternalCustomer> merged = new ArrayList<>(customers.size());
+            for (List<ExternalCustomer> records : customers) {
+                merged.add(ExternalCustomerMerger.mergeAll(records));
+            }
+            return merged;
+        }
+
+        void forEachRecord(Consumer<ExternalCustomer> action) {
+            customers.forEach(records -> records.forEach(action));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package codingdojo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import codingdojo.model.Customer;
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.SyncSummary;
+import codingdojo.model.enums.CustomerField;
+import codingdojo.model.enums.CustomerType;
+import codingdojo.service.CustomerSync;
+
+class BatchCustomerDataLayerTest {
+
+    @Test
+    void multiKeyFindersLeaveOutKeysWithoutMatch() {
+        FakeDatabase db = new FakeDatabase();
+        Customer customer = Customer.builder()
+            .internalId("45435")
+            .externalId("12345")
+            .masterExternalId("12345")
+            .companyNumber("470813-8895")
+            .customerType(CustomerType.COMPANY)
+            .build();
+        db.addCustomer(customer);
+
+        assertEquals(Map.of("12345", customer), db.findByExternalIds(Arrays.asList("12345", "67890")));
+        assertEquals(Map.of("12345", customer), db.findByMasterExternalIds(List.of("12345", "67890")));
+        assertEquals(Map.of("470813-8895", customer), db.findByCompanyNumbers(List.of("470813-8895", "000-3234")));
+    }
+
+    @Test
+    void batchSyncIssuesOneQueryPerIndex() {
+        CountingDatabase db = new CountingDatabase();
+        Customer existing = Customer.builder()
+            .internalId("45435")
+            .externalId("ext-0")
+            .masterExternalId("ext-0")
+            .companyNumber("cn-0")
+            .customerType(CustomerType.COMPANY)
+            .build();
+        db.addCustomer(existing);
+        List<ExternalCustomer> feed = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            feed.add(ExternalCustomer.builder()
+                .externalId("ext-" + i)
+                .companyNumber("cn-" + i)
+                .name("Company " + i)
+                .build());
+        }
+
+        SyncSummary summary = new CustomerSync(db).syncBatch(feed);
+
+        assertEquals(9, summary.getCreated());
+        assertEquals(1, summary.getUpdated());
+        assertEquals(List.of("findByExternalIds", "findByMasterExternalIds", "findByCompanyNumbers", "updateCustomerFields"),
+            db.calls.stream().filter(call -> !call.equals("createCustomerRecord")).toList());
+        assertEquals("Company 0", existing.getName());
+    }
+
+    @Test
+    void customerReKeyedEarlierInTheChunkIsNotFoundUnderItsOldKey() {
+        FakeDatabase db = new FakeDatabase();
+        Customer rekeyed = Customer.builder()
+            .internalId("45435")
+            .masterExternalId("12345")
+            .companyNumber("470813-8895")
+            .customerType(CustomerType.COMPANY)
+            .name("Acme")
+            .build();
+        Customer other = Customer.builder()
+            .internalId("45436")
+            .externalId("12345")
+            .companyNumber("000-3234")
+            .customerType(CustomerType.COMPANY)
+            .name("Other")
+            .build();
+        db.addCustomer(rekeyed);
+        db.addCustomer(other);
+        List<ExternalCustomer> chunk = List.of(
+            ExternalCustomer.builder().externalId("67890").companyNumber("470813-8895").name("Acme Inc.").build(),
+            ExternalCustomer.builder().externalId("12345").companyNumber("000-3234").name("Other Ltd.").build());
+
+        SyncSummary summary = new CustomerSync(db).syncBatch(chunk);
+
+        assertEquals(2, summary.getUpdated());
+        assertEquals("67890", rekeyed.getMasterExternalId());
+        // had the second record still found it under its old master id, it would be renamed as a duplicate
+        assertEquals("Acme Inc.", rekeyed.getName());
+        assertEquals("Other Ltd.", other.getName());
+    }
+
+    private static class CountingDatabase extends FakeDatabase {
+        final List<String> calls = new ArrayList<>();
+        // the default multi-key finders fall back on the single-key ones, which aren't queries of their own then
+        private boolean inMultiKeyQuery;
+
+        @Override
+        public Customer createCustomerRecord(Customer customer) {
+            calls.add("createCustomerRecord");
+            return super.createCustomerRecord(customer);
+        }
+
+        @Override
+        public Customer findByExternalId(String externalId) {
+            if (!inMultiKeyQuery) calls.add("findByExternalId");
+            return super.findByExternalId(externalId);
+        }
+
+        @Override
+        public Customer findByMasterExternalId(String externalId) {
+            if (!inMultiKeyQuery) calls.add("findByMasterExternalId");
+            return super.findByMasterExternalId(externalId);
+        }
+
+        @Override
+        public Customer findByCompanyNumber(String companyNumber) {
+            if (!inMultiKeyQuery) calls.add("findByCompanyNumber");
+            return super.findByCompanyNumber(companyNumber);
+        }
+
+        @Override
+        public Map<String, Customer> findByExternalIds(Collection<String> externalIds) {
+            calls.add("findByExternalIds");
+            inMultiKeyQuery = true;
+            try {
+                return super.findByExternalIds(externalIds);
+            } finally {
+                inMultiKeyQuery = false;
+            }
+        }
+
+        @Override
+        public Map<String, Customer> findByMasterExternalIds(Collection<String> externalIds) {
+            calls.add("findByMasterExternalIds");
+            inMultiKeyQuery = true;
+            try {
+                return super.findByMasterExternalIds(externalIds);
+            } finally {
+                inMultiKeyQuery = false;
+            }
+        }
+
+        @Override
+        public Map<String, Customer> findByCompanyNumbers(Collection<String> companyNumbers) {
+            calls.add("findByCompanyNumbers");
+            inMultiKeyQuery = true;
+            try {
+                return super.findByCompanyNumbers(companyNumbers);
+            } finally {
+                inMultiKeyQuery = false;
+            }
+        }
+
+        @Override
+        public void updateCustomerRecords(Collection<Customer> customers) {
+            calls.add("updateCustomerRecords");
+            super.updateCustomerRecords(customers);
+        }
+
+        @Override
+        public void updateCustomerFields(Map<Customer, Set<CustomerField>> changedFieldsByCustomer) {
+            calls.add("updateCustomerFields");
+            super.updateCustomerFields(changedFieldsByCustomer);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package codingdojo;
+
+import static codingdojo.ExternalCustomerFixtures.createExternalCompany;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import codingdojo.repository.BloomFilterCustomerDataLayer;
+import codingdojo.service.CustomerSync;
+
+class BloomFilterCustomerDataLayerTest {
+
+    @Test
+    void newCompanySkipsBothLookupsOnceWarmedUp() {
+        FakeDatabase db = new FakeDatabase();
+        BloomFilterCustomerDataLayer filter = new BloomFilterCustomerDataLayer(db, 1000, 0.01);
+        filter.warmUp(db.getAllCustomers());
+        CustomerSync sut = new CustomerSync(filter);
+
+        boolean created = sut.syncWithDataLayer(createExternalCompany());
+
+        assertTrue(created);
+        assertEquals(2, filter.getSkippedLookups());
+    }
+
+    @Test
+    void createdCustomerIsFoundOnNextSync() {
+        FakeDatabase db = new FakeDatabase();
+        BloomFilterCustomerDataLayer filter = new BloomFilterCustomerDataLayer(db, 1000, 0.01);
+        filter.warmUp(db.getAllCustomers());
+        CustomerSync sut = new CustomerSync(filter);
+
+        sut.syncWithDataLayer(createExternalCompany());
+        boolean created = sut.syncWithDataLayer(createExternalCompany());
+
+        assertFalse(created);
+        assertEquals(1, db.getAllCustomers().size());
+    }
+}
@@ -0,0 +1,75 @@
+package codingdojo;
+
+import static codingdojo.ExternalCustomerFixtures.createExternalCompany;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import codingdojo.model.Customer;
+import codingdojo.model.enums.CustomerType;
+import codingdojo.repository.CachingCustomerDataLayer;
+import codingdojo.service.CustomerSync;
+
+class CachingCustomerDataLayerTest {
+
+    @Test
+    void repeatedSyncOfSameCompanyIsServedFromCache() {
+        FakeDatabase db = new FakeDatabase();
+        db.addCustomer(Customer.builder()
+            .externalId("12345")
+            .companyNumber("470813-8895")
+            .customerType(CustomerType.COMPANY)
+            .internalId("45435")
+            .build());
+        CachingCustomerDataLayer cache = new CachingCustomerDataLayer(db, 100, Duration.ofMinutes(5));
+        CustomerSync sut = new CustomerSync(cache);
+
+        sut.syncWithDataLayer(createExternalCompany());
+        sut.syncWithDataLayer(createExternalCompany());
+
+        // first sync misses on external id and master id, the second one hits on external id
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    void createdCustomerIsCachedUnderItsKeys() {
+        FakeDatabase db = new FakeDatabase();
+        CachingCustomerDataLayer cache = new CachingCustomerDataLayer(db, 100, Duration.ofMinutes(5));
+        CustomerSync sut = new CustomerSync(cache);
+
+        sut.syncWithDataLayer(createExternalCompany());
+
+        String internalId = db.findByExternalId("12345").getInternalId();
+        assertEquals(internalId, cache.findByCompanyNumber("470813-8895").getInternalId());
+        assertEquals(internalId, cache.findByExternalId("12345").getInternalId());
+        assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    void failedWriteLeavesTheCachedCustomerUnchanged() {
+        FakeDatabase db = new FakeDatabase() {
+            @Override
+            public Customer updateCustomerRecord(Customer customer) {
+                throw new IllegalStateException("connection reset");
+            }
+        };
+        db.addCustomer(Customer.builder()
+            .externalId("12345")
+            .companyNumber("470813-8895")
+            .customerType(CustomerType.COMPANY)
+            .internalId("45435")
+            .name("Acme")
+            .build());
+        CachingCustomerDataLayer cache = new CachingCustomerDataLayer(db, 100, Duration.ofMinutes(5));
+        CustomerSync sut = new CustomerSync(cache);
+
+        assertThrows(IllegalStateException.class, () -> sut.syncWithDataLayer(createExternalCompany()));
+
+        assertEquals("Acme", cache.findByExternalId("12345").getName());
+        assertEquals(1, cache.getHitCount());
+    }
+}
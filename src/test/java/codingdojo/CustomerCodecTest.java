@@ -0,0 +1,115 @@
+package codingdojo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import codingdojo.codec.CustomerCodec;
+import codingdojo.codec.ExternalCustomerCodec;
+import codingdojo.codec.ShoppingListCodec;
+import codingdojo.model.Address;
+import codingdojo.model.Customer;
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.ShoppingList;
+import codingdojo.model.enums.CustomerType;
+
+class CustomerCodecTest {
+
+    @Test
+    void customerRoundTripsThroughExactlySizedBuffer() {
+        Customer customer = Customer.builder()
+            .internalId("45435")
+            .externalId("12345")
+            .masterExternalId("12345")
+            .companyNumber("470813-8895")
+            .name("Åsa's Blomster 🌷")
+            .customerType(CustomerType.COMPANY)
+            .bonusPointsBalance(-25)
+            .fingerprint(0x8000_0000_0000_0001L)
+            .address(new Address("123 main st", null, "SE-123 45"))
+            .shoppingLists(List.of(new ShoppingList("lipstick", "blusher"), new ShoppingList()))
+            .build();
+        ByteBuffer buffer = ByteBuffer.allocate(CustomerCodec.encodedSize(customer));
+
+        CustomerCodec.encode(customer, buffer);
+        assertEquals(buffer.capacity(), buffer.position());
+        Customer decoded = CustomerCodec.decode(buffer.flip());
+
+        assertEquals(CustomerPrinter.print(customer, ""), CustomerPrinter.print(decoded, ""));
+        assertEquals(customer.getFingerprint(), decoded.getFingerprint());
+        assertNull(decoded.getPreferredStore());
+    }
+
+    @Test
+    void externalCustomerRoundTripsThroughDirectBuffer() {
+        ExternalCustomer externalCustomer = ExternalCustomer.builder()
+            .externalId("12345")
+            .name("Joe Bloggs")
+            .preferredStore("Nordstan")
+            .bonusPointsBalance(300)
+            .shoppingLists(List.of(new ShoppingList("lipstick", "foundation")))
+            .sequenceNumber(1L << 40)
+            .build();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(ExternalCustomerCodec.encodedSize(externalCustomer));
+
+        ExternalCustomerCodec.encode(externalCustomer, buffer);
+
+        assertEquals(externalCustomer, ExternalCustomerCodec.decode(buffer.flip()));
+    }
+
+    @Test
+    void storedVersion1DataStillDecodes() {
+        // version, present fields, internal id, external id, company number, name, type, one list of one product
+        byte[] customer = HexFormat.of().parseHex("01" + "5b" + "053435343335" + "053132333435" + "0b3437303831332d38383935"
+            + "0441636d65" + "02" + "0101086c6970737469636b");
+        // version, present fields, external id, company number, name, bonus points -25, no lists
+        byte[] externalCustomer = HexFormat.of().parseHex("01" + "17" + "053132333435" + "0b3437303831332d38383935"
+            + "0441636d65" + "31" + "00");
+
+        Customer decoded = CustomerCodec.decode(ByteBuffer.wrap(customer));
+        ExternalCustomer decodedExternal = ExternalCustomerCodec.decode(ByteBuffer.wrap(externalCustomer));
+
+        assertEquals("45435", decoded.getInternalId());
+        assertEquals("12345", decoded.getExternalId());
+        assertEquals("470813-8895", decoded.getCompanyNumber());
+        assertEquals("Acme", decoded.getName());
+        assertEquals(CustomerType.COMPANY, decoded.getCustomerType());
+        assertEquals(List.of(new ShoppingList("lipstick")), decoded.getShoppingLists());
+        assertNull(decoded.getAppliedSequenceNumber());
+        assertEquals(ExternalCustomer.builder()
+            .externalId("12345")
+            .companyNumber("470813-8895")
+            .name("Acme")
+            .bonusPointsBalance(-25)
+            .build(), decodedExternal);
+        assertNull(decodedExternal.getSequenceNumber());
+    }
+
+    @Test
+    void countThatOverrunsTheBufferIsRejected() {
+        ByteBuffer tooMany = ByteBuffer.wrap(new byte[] {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07, 0x01, 0x61});
+        ByteBuffer negative = ByteBuffer.wrap(new byte[] {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f});
+        // a customer with no fields whose shopping list count overruns the buffer
+        ByteBuffer customer = ByteBuffer.wrap(new byte[] {CustomerCodec.VERSION, 0x00, 0x02, 0x00});
+
+        assertEquals("Count of 2147483647 products overruns the buffer at 5",
+            assertThrows(IllegalArgumentException.class, () -> ShoppingListCodec.decode(tooMany)).getMessage());
+        assertEquals("Count of 4294967295 products overruns the buffer at 5",
+            assertThrows(IllegalArgumentException.class, () -> ShoppingListCodec.decode(negative)).getMessage());
+        assertEquals("Count of 2 shopping lists overruns the buffer at 3",
+            assertThrows(IllegalArgumentException.class, () -> CustomerCodec.decode(customer)).getMessage());
+    }
+
+    @Test
+    void unknownVersionIsRejected() {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] {99, 0, 0});
+
+        assertThrows(IllegalArgumentException.class, () -> CustomerCodec.decode(buffer));
+    }
+}
@@ -0,0 +1,104 @@
+package codingdojo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import codingdojo.model.Customer;
+import codingdojo.model.CustomerMatches;
+import codingdojo.model.enums.ConflictReason;
+import codingdojo.model.enums.MatchTerm;
+
+class CustomerMatchesTest {
+
+    @Test
+    void noDuplicates() {
+        CustomerMatches matches = new CustomerMatches();
+
+        assertFalse(matches.hasDuplicates());
+        assertEquals(0, matches.getDuplicateCount());
+        assertEquals(List.of(), matches.getDuplicates());
+        assertEquals(List.of(), visitedDuplicates(matches));
+    }
+
+    @Test
+    void oneDuplicate() {
+        CustomerMatches matches = new CustomerMatches();
+        Customer duplicate = customer("1");
+
+        matches.addDuplicate(duplicate);
+
+        assertTrue(matches.hasDuplicates());
+        assertEquals(1, matches.getDuplicateCount());
+        assertEquals(List.of(duplicate), matches.getDuplicates());
+        assertEquals(List.of(duplicate), visitedDuplicates(matches));
+    }
+
+    @Test
+    void severalDuplicatesKeepTheirOrder() {
+        CustomerMatches matches = new CustomerMatches();
+        List<Customer> duplicates = List.of(customer("1"), customer("2"), customer("3"));
+
+        duplicates.forEach(matches::addDuplicate);
+
+        assertTrue(matches.hasDuplicates());
+        assertEquals(3, matches.getDuplicateCount());
+        assertEquals(duplicates, matches.getDuplicates());
+        assertEquals(duplicates, visitedDuplicates(matches));
+    }
+
+    @Test
+    void resetInstanceCarriesNothingOverToTheNextRecord() {
+        CustomerMatches matches = new CustomerMatches();
+        matches.setCustomer(customer("1"));
+        matches.setMatchTerm(MatchTerm.EXTERNAL_ID);
+        matches.setCustomerRekeyed(true);
+        matches.setStale(true);
+        matches.addDuplicate(customer("2"));
+        matches.addDuplicate(customer("3"));
+        matches.conflict(ConflictReason.NOT_A_COMPANY, "conflict");
+
+        matches.reset();
+        Customer duplicate = customer("4");
+        matches.addDuplicate(duplicate);
+
+        assertEquals(List.of(duplicate), matches.getDuplicates());
+        assertEquals(List.of(duplicate), visitedDuplicates(matches));
+        assertFalse(matches.hasConflict());
+        assertNull(matches.getConflictMessage());
+        assertNull(matches.getCustomer());
+        assertNull(matches.getMatchTerm());
+        assertFalse(matches.isCustomerRekeyed());
+        assertFalse(matches.isStale());
+    }
+
+    @Test
+    void duplicatesHandedOutEarlierSurviveAReset() {
+        CustomerMatches matches = new CustomerMatches();
+        List<Customer> duplicates = List.of(customer("1"), customer("2"));
+        duplicates.forEach(matches::addDuplicate);
+        List<Customer> handedOut = matches.getDuplicates();
+
+        matches.reset();
+        matches.addDuplicate(customer("3"));
+        matches.addDuplicate(customer("4"));
+
+        assertEquals(duplicates, handedOut);
+    }
+
+    private static List<Customer> visitedDuplicates(CustomerMatches matches) {
+        List<Customer> visited = new ArrayList<>();
+        matches.forEachDuplicate(visited::add);
+        return visited;
+    }
+
+    private static Customer customer(String externalId) {
+        return Customer.builder().externalId(externalId).masterExternalId(externalId).build();
+    }
+}
@@ -1,20 +1,39 @@
 package codingdojo;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import org.approvaltests.Approvals;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import codingdojo.exception.ConflictException;
+import codingdojo.mapper.ExternalCustomerFingerprint;
 import codingdojo.model.Address;
 import codingdojo.model.Customer;
 import codingdojo.model.ExternalCustomer;
 import codingdojo.model.ShoppingList;
+import codingdojo.model.SyncResult;
+import codingdojo.model.SyncSummary;
+import codingdojo.model.enums.ConflictReason;
+import codingdojo.model.enums.CustomerField;
 import codingdojo.model.enums.CustomerType;
+import codingdojo.model.enums.SyncOutcome;
+import codingdojo.repository.AsyncCustomerDataLayer;
+import codingdojo.repository.InMemoryCheckpointStore;
+import codingdojo.repository.InMemoryFingerprintStore;
 import codingdojo.service.CustomerSync;
 
 
@@ -165,6 +184,39 @@ class CustomerSyncTest {
         Approvals.verify(toAssert);
     }
 
+    @Test
+    void trySyncReportsConflictReasonWithoutThrowing() {
+        ExternalCustomer externalCustomer = createExternalCompany();
+        externalCustomer.setExternalId("12345");
+
+        FakeDatabase db = new FakeDatabase();
+        db.addCustomer(Customer.builder()
+            .customerType(CustomerType.PERSON)
+            .internalId("45435")
+            .externalId("12345")
+            .build());
+        CustomerSync sut = CustomerSync.builder().customerDataLayer(db).stacklessConflicts(true).build();
+
+        SyncResult result = sut.trySync(externalCustomer);
+
+        assertEquals(SyncOutcome.CONFLICT, result.outcome());
+        assertEquals(ConflictReason.NOT_A_COMPANY, result.conflictReason());
+        ConflictException thrown = Assertions.assertThrows(ConflictException.class, () -> sut.syncWithDataLayer(externalCustomer));
+        assertEquals(ConflictReason.NOT_A_COMPANY, thrown.getReason());
+        assertEquals(0, thrown.getStackTrace().length);
+    }
+
+    @Test
+    void conflictExceptionKeepsSuppressedExceptionsUnlessStackless() {
+        ConflictException conflict = new ConflictException(ConflictReason.NOT_A_PERSON, "conflict");
+        conflict.addSuppressed(new IllegalStateException("close failed"));
+        ConflictException stackless = ConflictException.stackless(ConflictReason.NOT_A_PERSON, "conflict");
+        stackless.addSuppressed(new IllegalStateException("close failed"));
+
+        assertEquals(1, conflict.getSuppressed().length);
+        assertEquals(0, stackless.getSuppressed().length);
+    }
+
     @Test
     void syncByExternalIdButCompanyNumbersConflict() {
         String externalId = "12345";
@@ -304,6 +356,315 @@ class CustomerSyncTest {
     }
 
 
+    @Test
+    void syncBatchReportsOutcomePerRecord() {
+        ExternalCustomer existingCompany = createExternalCompany();
+        existingCompany.setExternalId("12345");
+
+        ExternalCustomer newPerson = createExternalPrivatePerson();
+        newPerson.setExternalId("67890");
+
+        ExternalCustomer conflictingPerson = createExternalPrivatePerson();
+        conflictingPerson.setExternalId("12345");
+
+        Customer customer = createCustomerWithSameCompanyAs(existingCompany);
+        customer.setExternalId("12345");
+
+        FakeDatabase db = new FakeDatabase();
+        db.addCustomer(customer);
+        CustomerSync sut = new CustomerSync(db);
+
+        StringBuilder toAssert = printBeforeState(existingCompany, db);
+        toAssert.append("\n").append(ExternalCustomerPrinter.print(newPerson, ""));
+        toAssert.append("\n").append(ExternalCustomerPrinter.print(conflictingPerson, ""));
+
+        // ACT
+        SyncSummary summary = sut.syncBatch(List.of(existingCompany, newPerson, conflictingPerson));
+
+        assertEquals(1, summary.getCreated());
+        assertEquals(1, summary.getUpdated());
+        assertEquals(1, summary.getConflicts());
+        assertEquals(SyncOutcome.CONFLICT, summary.getResults().get(2).outcome());
+        printAfterState(db, toAssert);
+        Approvals.verify(toAssert);
+    }
+
+    @Test
+    void unchangedCustomerIsNotWrittenAgain() {
+        ExternalCustomer externalCustomer = createExternalPrivatePerson();
+        externalCustomer.setShoppingLists(List.of());
+
+        List<Customer> updates = new ArrayList<>();
+        FakeDatabase db = new FakeDatabase() {
+            @Override
+            public Customer updateCustomerRecord(Customer customer) {
+                updates.add(customer);
+                return super.updateCustomerRecord(customer);
+            }
+        };
+        CustomerSync sut = new CustomerSync(db);
+        sut.syncWithDataLayer(externalCustomer);
+
+        // ACT
+        boolean created = sut.syncWithDataLayer(externalCustomer);
+
+        assertFalse(created);
+        assertTrue(updates.isEmpty());
+    }
+
+    @Test
+    void repeatedDeliveryIsAcknowledgedFromFingerprint() {
+        ExternalCustomer externalCustomer = createExternalCompany();
+
+        List<String> lookups = new ArrayList<>();
+        FakeDatabase db = new FakeDatabase() {
+            @Override
+            public Customer findByExternalId(String externalId) {
+                lookups.add(externalId);
+                return super.findByExternalId(externalId);
+            }
+        };
+        CustomerSync sut = CustomerSync.builder()
+            .customerDataLayer(db)
+            .fingerprintStore(new InMemoryFingerprintStore())
+            .build();
+        sut.syncWithDataLayer(externalCustomer);
+
+        // ACT
+        boolean created = sut.syncWithDataLayer(createExternalCompany());
+
+        assertFalse(created);
+        assertEquals(1, lookups.size());
+        assertEquals(ExternalCustomerFingerprint.of(externalCustomer), db.findByExternalId("12345").getFingerprint());
+    }
+
+    @Test
+    void newFingerprintIsWrittenButReportedAsUnchanged() {
+        ExternalCustomer externalCustomer = createExternalPrivatePerson();
+        externalCustomer.setShoppingLists(List.of());
+
+        List<Customer> updates = new ArrayList<>();
+        FakeDatabase db = new FakeDatabase() {
+            @Override
+            public Customer updateCustomerRecord(Customer customer) {
+                updates.add(customer);
+                return super.updateCustomerRecord(customer);
+            }
+        };
+        new CustomerSync(db).syncWithDataLayer(externalCustomer);
+        CustomerSync sut = CustomerSync.builder()
+            .customerDataLayer(db)
+            .fingerprintStore(new InMemoryFingerprintStore())
+            .build();
+
+        // ACT
+        SyncResult result = sut.trySync(externalCustomer);
+
+        assertEquals(SyncOutcome.UNCHANGED, result.outcome());
+        assertEquals(1, updates.size());
+        assertEquals(ExternalCustomerFingerprint.of(externalCustomer), db.findByExternalId("12345").getFingerprint());
+    }
+
+    @Test
+    void fingerprintsAreNotRecordedWhenTheChunkFailsToFlush() {
+        ExternalCustomer externalCustomer = createExternalCompany();
+        Customer customer = createCustomerWithSameCompanyAs(externalCustomer);
+        customer.setExternalId("12345");
+
+        FakeDatabase db = new FakeDatabase() {
+            @Override
+            public void updateCustomerFields(Map<Customer, Set<CustomerField>> changedFieldsByCustomer) {
+                throw new IllegalStateException("connection reset");
+            }
+        };
+        db.addCustomer(customer);
+        InMemoryFingerprintStore fingerprints = new InMemoryFingerprintStore();
+        CustomerSync sut = CustomerSync.builder().customerDataLayer(db).fingerprintStore(fingerprints).build();
+
+        // ACT
+        assertThrows(IllegalStateException.class, () -> sut.syncBatch(List.of(externalCustomer)));
+
+        assertNull(fingerprints.find("12345"));
+    }
+
+    @Test
+    void failedRecordAbortsTheChunkWithoutFlushingIt() {
+        ExternalCustomer externalCustomer = createExternalCompany();
+        Customer customer = createCustomerWithSameCompanyAs(externalCustomer);
+        customer.setExternalId("12345");
+        ExternalCustomer failing = ExternalCustomer.builder().externalId("67890").companyNumber("000-3234").build();
+
+        List<Customer> flushed = new ArrayList<>();
+        FakeDatabase db = new FakeDatabase() {
+            @Override
+            public Customer createCustomerRecord(Customer customer) {
+                throw new IllegalStateException("connection reset");
+            }
+
+            @Override
+            public void updateCustomerFields(Map<Customer, Set<CustomerField>> changedFieldsByCustomer) {
+                flushed.addAll(changedFieldsByCustomer.keySet());
+            }
+        };
+        db.addCustomer(customer);
+        CustomerSync sut = new CustomerSync(db);
+
+        // ACT
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+            () -> sut.syncBatch(List.of(externalCustomer, failing)));
+
+        assertEquals("connection reset", thrown.getMessage());
+        assertEquals(List.of(), flushed);
+    }
+
+    @Test
+    void redeliveredShoppingListIsNeitherAppendedNorWrittenAgain() {
+        ExternalCustomer externalCustomer = createExternalCompany();
+
+        List<ShoppingList> writtenShoppingLists = new ArrayList<>();
+        FakeDatabase db = new FakeDatabase() {
+            @Override
+            public void updateShoppingList(ShoppingList consumerShoppingList) {
+                writtenShoppingLists.add(consumerShoppingList);
+                super.updateShoppingList(consumerShoppingList);
+            }
+        };
+        CustomerSync sut = new CustomerSync(db);
+        sut.syncWithDataLayer(externalCustomer);
+
+        // ACT
+        sut.syncWithDataLayer(createExternalCompany());
+
+        assertEquals(List.of(new ShoppingList("lipstick", "blusher")), writtenShoppingLists);
+        assertEquals(List.of(new ShoppingList("lipstick", "blusher")), db.findByExternalId("12345").getShoppingLists());
+    }
+
+    @Test
+    void deltaSyncDropsStaleRecordsAndResumesAfterCheckpoint() {
+        ExternalCustomer latest = createExternalCompany();
+        latest.setName("Acme Ltd.");
+        latest.setSequenceNumber(5L);
+        ExternalCustomer older = createExternalCompany();
+        older.setSequenceNumber(3L);
+
+        FakeDatabase db = new FakeDatabase();
+        InMemoryCheckpointStore checkpoints = new InMemoryCheckpointStore();
+        CustomerSync sut = CustomerSync.builder().customerDataLayer(db).deltaSync(true).checkpointStore(checkpoints).build();
+
+        // ACT
+        SyncSummary summary = sut.syncBatch(List.of(latest, older));
+
+        assertEquals(1, summary.getCreated());
+        assertEquals(1, summary.getStale());
+        assertEquals("Acme Ltd.", db.findByExternalId("12345").getName());
+        assertEquals(5L, db.findByExternalId("12345").getAppliedSequenceNumber());
+        assertEquals(5L, checkpoints.load());
+
+        ExternalCustomer replayed = createExternalPrivatePerson();
+        replayed.setExternalId("67890");
+        replayed.setSequenceNumber(4L);
+        CustomerSync restarted = CustomerSync.builder().customerDataLayer(db).deltaSync(true).checkpointStore(checkpoints).build();
+
+        assertEquals(SyncOutcome.STALE, restarted.trySync(replayed).outcome());
+        assertNull(db.findByExternalId("67890"));
+    }
+
+    @Test
+    void syncAsyncIssuesIndependentLookupsTogether() {
+        ExternalCustomer externalCustomer = createExternalCompany();
+        Customer customer = createCustomerWithSameCompanyAs(externalCustomer);
+        customer.setExternalId("12345");
+
+        FakeDatabase db = new FakeDatabase();
+        db.addCustomer(customer);
+        Queue<Runnable> calls = new ArrayDeque<>();
+        CustomerSync sut = CustomerSync.builder()
+            .customerDataLayer(db)
+            .asyncDataLayer(AsyncCustomerDataLayer.of(db, calls::add))
+            .build();
+
+        // ACT
+        CompletableFuture<SyncResult> result = sut.syncAsync(externalCustomer);
+
+        assertEquals(2, calls.size());
+        while (!calls.isEmpty()) {
+            calls.poll().run();
+        }
+        assertEquals(SyncOutcome.UPDATED, result.join().outcome());
+        assertEquals("Acme Inc.", db.findByExternalId("12345").getName());
+    }
+
+    @Test
+    void syncAsyncWritesInOrderWhenTheDataLayerCompletesOutOfOrder() {
+        ExternalCustomer externalCustomer = createExternalCompany();
+        Customer customer = createCustomerWithSameCompanyAs(externalCustomer);
+        customer.setExternalId("12345");
+        customer.setMasterExternalId("12345");
+        customer.setName("Acme");
+        ExternalCustomer newCompany = createExternalCompany();
+        newCompany.setExternalId("67890");
+        newCompany.setCompanyNumber("000-3234");
+
+        List<String> writes = new ArrayList<>();
+        FakeDatabase db = new FakeDatabase() {
+            @Override
+            public Customer createCustomerRecord(Customer customer) {
+                writes.add("create " + customer.getExternalId());
+                return super.createCustomerRecord(customer);
+            }
+
+            @Override
+            public Customer updateCustomerRecord(Customer customer) {
+                writes.add("update " + customer.getExternalId());
+                return super.updateCustomerRecord(customer);
+            }
+
+            @Override
+            public void updateShoppingList(ShoppingList consumerShoppingList) {
+                writes.add("shopping list");
+                super.updateShoppingList(consumerShoppingList);
+            }
+
+            // a remote store hands out a fresh copy per lookup
+            @Override
+            public Customer findByMasterExternalId(String masterExternalId) {
+                Customer found = super.findByMasterExternalId(masterExternalId);
+                return found == null ? null : Customer.builder()
+                    .internalId(found.getInternalId())
+                    .externalId(found.getExternalId())
+                    .masterExternalId(found.getMasterExternalId())
+                    .companyNumber(found.getCompanyNumber())
+                    .customerType(found.getCustomerType())
+                    .name("Acme")
+                    .build();
+            }
+        };
+        db.addCustomer(customer);
+        // calls issued together complete in reverse
+        Deque<Runnable> calls = new ArrayDeque<>();
+        CustomerSync sut = CustomerSync.builder()
+            .customerDataLayer(db)
+            .asyncDataLayer(AsyncCustomerDataLayer.of(db, calls::add))
+            .build();
+
+        // ACT
+        CompletableFuture<SyncResult> updated = sut.syncAsync(externalCustomer);
+        runLatestFirst(calls);
+        CompletableFuture<SyncResult> created = sut.syncAsync(newCompany);
+        runLatestFirst(calls);
+
+        assertEquals(SyncOutcome.UPDATED, updated.join().outcome());
+        assertEquals(SyncOutcome.CREATED, created.join().outcome());
+        assertEquals(List.of("update 12345", "shopping list", "create 67890", "shopping list"), writes);
+        assertEquals("Acme Inc.", db.findByExternalId("12345").getName());
+    }
+
+    private static void runLatestFirst(Deque<Runnable> calls) {
+        while (!calls.isEmpty()) {
+            calls.pollLast().run();
+        }
+    }
+
     private ExternalCustomer createExternalPrivatePerson() {
         return ExternalCustomer.builder()
             .externalId("12345")
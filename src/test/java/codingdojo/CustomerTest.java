@@ -0,0 +1,40 @@
+package codingdojo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import codingdojo.model.Customer;
+import codingdojo.model.ShoppingList;
+
+class CustomerTest {
+
+    @Test
+    void settingNoShoppingListsLeavesAnEmptyList() {
+        Customer customer = Customer.builder().shoppingLists(List.of(new ShoppingList("lipstick"))).build();
+
+        customer.setShoppingLists(null);
+        customer.addShoppingList(new ShoppingList("blusher"));
+
+        assertEquals(List.of(new ShoppingList("blusher")), customer.getShoppingLists());
+    }
+
+    @Test
+    void shoppingListSnapshotIsUnchangedByLaterAppends() {
+        Customer customer = Customer.builder().shoppingLists(List.of(new ShoppingList("lipstick"))).build();
+        List<ShoppingList> initial = customer.getShoppingLists();
+
+        customer.addShoppingList(new ShoppingList("blusher"));
+        List<ShoppingList> afterAdd = customer.getShoppingLists();
+        // enough lists to grow the backing array past its first capacity
+        for (int i = 0; i < 20; i++) {
+            customer.addShoppingLists(List.of(new ShoppingList("foundation " + i), new ShoppingList("eyeliner " + i)));
+        }
+
+        assertEquals(List.of(new ShoppingList("lipstick")), initial);
+        assertEquals(List.of(new ShoppingList("lipstick"), new ShoppingList("blusher")), afterAdd);
+        assertEquals(42, customer.getShoppingLists().size());
+    }
+}
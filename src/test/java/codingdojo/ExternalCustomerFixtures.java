@@ -0,0 +1,26 @@
+package codingdojo;
+
+import java.util.List;
+
+import codingdojo.model.Address;
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.ShoppingList;
+
+/**
+ * External records shared by the data layer tests.
+ */
+public final class ExternalCustomerFixtures {
+
+    private ExternalCustomerFixtures() {
+    }
+
+    public static ExternalCustomer createExternalCompany() {
+        return ExternalCustomer.builder()
+            .externalId("12345")
+            .name("Acme Inc.")
+            .address(new Address("123 main st", "Helsingborg", "SE-123 45"))
+            .companyNumber("470813-8895")
+            .shoppingLists(List.of(new ShoppingList("lipstick", "blusher")))
+            .build();
+    }
+}
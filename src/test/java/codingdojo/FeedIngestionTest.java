@@ -0,0 +1,134 @@
+package codingdojo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import codingdojo.exception.FeedParseException;
+import codingdojo.ingest.ExternalCustomerReader;
+import codingdojo.ingest.FeedFormat;
+import codingdojo.ingest.FeedIngestion;
+import codingdojo.model.Address;
+import codingdojo.model.Customer;
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.ShoppingList;
+import codingdojo.model.SyncSummary;
+import codingdojo.model.enums.CustomerType;
+import codingdojo.repository.InMemoryCustomerDataLayer;
+import codingdojo.service.CustomerSync;
+
+class FeedIngestionTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void ingestsNdjsonFeed() throws IOException {
+        Path feed = dir.resolve("customers.ndjson");
+        Files.write(feed, List.of(
+            "{\"externalId\":\"12345\",\"companyNumber\":\"470813-8895\",\"name\":\"Acme Inc.\",\"preferredStore\":\"Nordstan\","
+                + "\"address\":{\"street\":\"123 main st\",\"city\":\"Helsingborg\",\"postalCode\":\"SE-123 45\"},"
+                + "\"shoppingLists\":[[\"lipstick\",\"blusher\"]]}",
+            "",
+            "{\"externalId\":\"67890\",\"name\":\"Jane \\\"J\\\" Doe\",\"bonusPointsBalance\":25}"));
+        InMemoryCustomerDataLayer db = new InMemoryCustomerDataLayer();
+
+        SyncSummary summary = new FeedIngestion(new CustomerSync(db), 1, 1).ingest(feed, FeedFormat.NDJSON);
+
+        assertEquals(2, summary.getCreated());
+        assertTrue(summary.getResults().isEmpty());
+        Customer company = db.findByCompanyNumber("470813-8895");
+        assertEquals(CustomerType.COMPANY, company.getCustomerType());
+        assertEquals(new Address("123 main st", "Helsingborg", "SE-123 45"), company.getAddress());
+        assertEquals(List.of(new ShoppingList("lipstick", "blusher")), company.getShoppingLists());
+        Customer person = db.findByExternalId("67890");
+        assertEquals("Jane \"J\" Doe", person.getName());
+        assertEquals(25, person.getBonusPointsBalance());
+    }
+
+    @Test
+    void ingestsCsvFeed() throws IOException {
+        Path feed = dir.resolve("customers.csv");
+        Files.write(feed, List.of(
+            "externalId,companyNumber,name,street,city,postalCode,bonusPointsBalance,shoppingLists",
+            "12345,470813-8895,\"Acme, Inc.\",123 main st,Helsingborg,SE-123 45,,lipstick;blusher|eyeliner",
+            "67890,,Jane Doe,,,,25,"));
+        InMemoryCustomerDataLayer db = new InMemoryCustomerDataLayer();
+
+        SyncSummary summary = new FeedIngestion(new CustomerSync(db)).ingest(feed, FeedFormat.CSV);
+
+        assertEquals(2, summary.getCreated());
+        Customer company = db.findByCompanyNumber("470813-8895");
+        assertEquals("Acme, Inc.", company.getName());
+        assertEquals(List.of(new ShoppingList("lipstick", "blusher"), new ShoppingList("eyeliner")), company.getShoppingLists());
+        Customer person = db.findByExternalId("67890");
+        assertEquals(CustomerType.PERSON, person.getCustomerType());
+        assertEquals(null, person.getAddress());
+    }
+
+    @Test
+    void malformedLineStopsIngestionWithItsLineNumber() throws IOException {
+        Path feed = dir.resolve("broken.ndjson");
+        Files.write(feed, List.of("{\"externalId\":\"1\"}", "{\"externalId\":"));
+
+        FeedParseException e = assertThrows(FeedParseException.class,
+            () -> new FeedIngestion(new CustomerSync(new InMemoryCustomerDataLayer())).ingest(feed, FeedFormat.NDJSON));
+
+        assertTrue(e.getMessage().startsWith("Line 2:"), e.getMessage());
+    }
+
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void errorWhileParsingEndsTheIngestionAndIsRethrown() {
+        ExternalCustomerReader reader = new ExternalCustomerReader() {
+            private int read;
+
+            @Override
+            public ExternalCustomer read() {
+                if (read++ == 3) {
+                    throw new StackOverflowError();
+                }
+                return ExternalCustomer.builder().externalId("ext-" + read).build();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        InMemoryCustomerDataLayer db = new InMemoryCustomerDataLayer();
+
+        assertThrows(StackOverflowError.class, () -> new FeedIngestion(new CustomerSync(db)).ingest(reader));
+
+        assertEquals(3, db.size());
+    }
+
+    @Test
+    void fractionalOrOutOfRangeNumberIsRejectedWithItsLineNumber() throws IOException {
+        Path feed = dir.resolve("numbers.ndjson");
+        Files.write(feed, List.of(
+            "{\"externalId\":\"1\",\"bonusPointsBalance\":25}",
+            "{\"externalId\":\"2\",\"bonusPointsBalance\":2.5}",
+            "{\"externalId\":\"3\",\"bonusPointsBalance\":3000000000}",
+            "{\"externalId\":\"4\",\"sequenceNumber\":1.5}"));
+
+        try (ExternalCustomerReader reader = FeedFormat.NDJSON.open(feed)) {
+            assertEquals(25, reader.read().getBonusPointsBalance());
+            assertEquals("Line 2: bonusPointsBalance is not a whole number: 2.5",
+                assertThrows(FeedParseException.class, reader::read).getMessage());
+            assertEquals("Line 3: bonusPointsBalance out of range: 3000000000",
+                assertThrows(FeedParseException.class, reader::read).getMessage());
+            assertEquals("Line 4: sequenceNumber is not a whole number: 1.5",
+                assertThrows(FeedParseException.class, reader::read).getMessage());
+        }
+    }
+}
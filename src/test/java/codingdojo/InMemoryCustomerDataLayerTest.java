@@ -0,0 +1,88 @@
+package codingdojo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import codingdojo.model.Customer;
+import codingdojo.model.ShoppingList;
+import codingdojo.model.StringDictionary;
+import codingdojo.model.enums.CustomerType;
+import codingdojo.repository.InMemoryCustomerDataLayer;
+
+class InMemoryCustomerDataLayerTest {
+
+    @Test
+    void createdCustomersGetDistinctInternalIds() {
+        InMemoryCustomerDataLayer db = new InMemoryCustomerDataLayer("shard-1:");
+
+        Customer first = db.createCustomerRecord(Customer.builder().externalId("1").build());
+        Customer second = db.createCustomerRecord(Customer.builder().externalId("2").build());
+
+        assertNotEquals(first.getInternalId(), second.getInternalId());
+        assertEquals("shard-1:1", first.getInternalId());
+        assertEquals("2", db.findByInternalId(second.getInternalId()).getExternalId());
+    }
+
+    @Test
+    void updateReindexesChangedKeys() {
+        InMemoryCustomerDataLayer db = new InMemoryCustomerDataLayer();
+        Customer customer = db.createCustomerRecord(Customer.builder()
+            .companyNumber("470813-8895")
+            .customerType(CustomerType.COMPANY)
+            .build());
+
+        customer.setExternalId("12345");
+        customer.setCompanyNumber("000-3234");
+        db.updateCustomerRecord(customer);
+
+        assertEquals(customer.getInternalId(), db.findByExternalId("12345").getInternalId());
+        assertEquals(customer.getInternalId(), db.findByCompanyNumber("000-3234").getInternalId());
+        assertNull(db.findByCompanyNumber("470813-8895"));
+    }
+
+    @Test
+    void customersAreStoredAndHandedOutAsCopies() {
+        InMemoryCustomerDataLayer db = new InMemoryCustomerDataLayer();
+        Customer customer = db.createCustomerRecord(Customer.builder().externalId("12345").name("Acme").build());
+
+        customer.setName("Acme Inc.");
+        Customer found = db.findByExternalId("12345");
+        found.setName("Acme Ltd.");
+        found.addShoppingList(new ShoppingList("lipstick"));
+
+        assertNotSame(found, db.findByExternalId("12345"));
+        assertEquals("Acme", db.findByExternalId("12345").getName());
+        assertEquals(List.of(), db.findByExternalId("12345").getShoppingLists());
+    }
+
+    @Test
+    void updateKeepsOnlyTheShoppingListsAddedSinceTheLastWrite() {
+        List<ShoppingList> interned = new ArrayList<>();
+        StringDictionary dictionary = new StringDictionary(100) {
+            @Override
+            public ShoppingList intern(ShoppingList shoppingList) {
+                interned.add(shoppingList);
+                return super.intern(shoppingList);
+            }
+        };
+        InMemoryCustomerDataLayer db = new InMemoryCustomerDataLayer("", dictionary);
+        Customer customer = db.createCustomerRecord(Customer.builder()
+            .externalId("12345")
+            .shoppingLists(List.of(new ShoppingList("lipstick")))
+            .build());
+
+        customer.addShoppingList(new ShoppingList("blusher"));
+        db.updateCustomerRecord(customer);
+
+        assertEquals(List.of(new ShoppingList("lipstick"), new ShoppingList("blusher")), interned);
+        assertEquals(customer.getShoppingLists(), db.findByExternalId("12345").getShoppingLists());
+        assertEquals(2, db.getShoppingLists().size());
+    }
+}
@@ -0,0 +1,95 @@
+package codingdojo;
+
+import static codingdojo.ExternalCustomerFixtures.createExternalCompany;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import codingdojo.model.Address;
+import codingdojo.model.Customer;
+import codingdojo.model.ShoppingList;
+import codingdojo.model.enums.CustomerType;
+import codingdojo.repository.MappedCustomerDataLayer;
+import codingdojo.service.CustomerSync;
+
+class MappedCustomerDataLayerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void syncedCustomerSurvivesReopen() throws IOException {
+        try (MappedCustomerDataLayer db = MappedCustomerDataLayer.open(directory)) {
+            assertTrue(new CustomerSync(db).syncWithDataLayer(createExternalCompany()));
+        }
+
+        try (MappedCustomerDataLayer db = MappedCustomerDataLayer.open(directory)) {
+            Customer customer = db.findByCompanyNumber("470813-8895");
+            assertEquals("12345", customer.getExternalId());
+            assertEquals("12345", db.findByMasterExternalId("12345").getExternalId());
+            assertEquals(CustomerType.COMPANY, customer.getCustomerType());
+            assertEquals(new Address("123 main st", "Helsingborg", "SE-123 45"), customer.getAddress());
+            assertEquals(List.of(new ShoppingList("lipstick", "blusher")), customer.getShoppingLists());
+            assertFalse(new CustomerSync(db).syncWithDataLayer(createExternalCompany()));
+        }
+    }
+
+    @Test
+    void updateDropsKeysTheCustomerNoLongerCarries() throws IOException {
+        try (MappedCustomerDataLayer db = MappedCustomerDataLayer.open(directory)) {
+            Customer customer = db.createCustomerRecord(Customer.builder().companyNumber("470813-8895").build());
+            customer.setCompanyNumber("000-3234");
+            db.updateCustomerRecord(customer);
+
+            assertNull(db.findByCompanyNumber("470813-8895"));
+            assertEquals(customer.getInternalId(), db.findByCompanyNumber("000-3234").getInternalId());
+        }
+    }
+
+    @Test
+    void indexesAreRebuiltFromLogAfterUncleanShutdown(@TempDir Path crashCopy) throws IOException {
+        try (MappedCustomerDataLayer db = MappedCustomerDataLayer.open(directory)) {
+            new CustomerSync(db).syncWithDataLayer(createExternalCompany());
+            db.force();
+            copyDirectory(directory, crashCopy);
+        }
+
+        try (MappedCustomerDataLayer db = MappedCustomerDataLayer.open(crashCopy)) {
+            assertEquals("12345", db.findByCompanyNumber("470813-8895").getExternalId());
+        }
+    }
+
+    @Test
+    void compactionKeepsLatestVersions() throws IOException {
+        try (MappedCustomerDataLayer db = MappedCustomerDataLayer.open(directory)) {
+            Customer customer = db.createCustomerRecord(Customer.builder().externalId("12345").build());
+            for (int i = 0; i < 1000; i++) {
+                customer.setName("name " + i);
+                db.updateCustomerRecord(customer);
+            }
+            db.compact();
+
+            assertEquals("name 999", db.findByExternalId("12345").getName());
+            Customer next = db.createCustomerRecord(Customer.builder().externalId("67890").build());
+            assertEquals("2", next.getInternalId());
+        }
+    }
+
+    private static void copyDirectory(Path source, Path target) throws IOException {
+        try (Stream<Path> files = Files.list(source)) {
+            for (Path file : files.toList()) {
+                Files.copy(file, target.resolve(file.getFileName()));
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package codingdojo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import codingdojo.model.Address;
+import codingdojo.model.Customer;
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.ShoppingList;
+import codingdojo.model.SyncSummary;
+import codingdojo.repository.InMemoryCustomerDataLayer;
+import codingdojo.service.CustomerSync;
+import codingdojo.service.ParallelCustomerSync;
+
+class ParallelCustomerSyncTest {
+
+    @Test
+    void parallelSyncCreatesEachCustomerOnce() {
+        InMemoryCustomerDataLayer db = new InMemoryCustomerDataLayer();
+        List<ExternalCustomer> feed = new ArrayList<>();
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 200; i++) {
+                feed.add(ExternalCustomer.builder()
+                    .externalId("ext-" + i)
+                    .companyNumber("cn-" + i)
+                    .name("Company " + i)
+                    .address(new Address("123 main st", "Helsingborg", "SE-123 45"))
+                    .shoppingLists(List.of(new ShoppingList("lipstick", "blusher")))
+                    .build());
+            }
+        }
+
+        SyncSummary summary = new ParallelCustomerSync(new CustomerSync(db), 8).syncAll(feed);
+
+        assertEquals(200, summary.getCreated());
+        assertEquals(800, summary.getUnchanged());
+        assertEquals(200, db.size());
+    }
+
+    @Test
+    void recordsSharingAnExternalIdAreNeverSyncedConcurrently() {
+        Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+        AtomicInteger maxInFlightPerKey = new AtomicInteger();
+        InMemoryCustomerDataLayer db = new InMemoryCustomerDataLayer() {
+            @Override
+            public Customer findByExternalId(String externalId) {
+                AtomicInteger count = inFlight.computeIfAbsent(externalId, key -> new AtomicInteger());
+                maxInFlightPerKey.accumulateAndGet(count.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(1);
+                    return super.findByExternalId(externalId);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    count.decrementAndGet();
+                }
+            }
+        };
+        List<ExternalCustomer> feed = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            feed.add(ExternalCustomer.builder()
+                .externalId("ext-" + i % 4)
+                .companyNumber("cn-" + i % 4)
+                .name("Company " + i % 4)
+                .build());
+        }
+
+        SyncSummary summary = new ParallelCustomerSync(new CustomerSync(db), 8).syncAll(feed);
+
+        assertEquals(4, summary.getCreated());
+        assertEquals(36, summary.getUnchanged());
+        assertEquals(4, db.size());
+        assertEquals(1, maxInFlightPerKey.get());
+    }
+
+    @Test
+    void inFlightRecordsAreBoundedByMaxConcurrency() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        InMemoryCustomerDataLayer db = new InMemoryCustomerDataLayer() {
+            @Override
+            public Customer findByExternalId(String externalId) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(2);
+                    return super.findByExternalId(externalId);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        };
+
+        // an unbounded pool, so only the slots hold records back
+        SyncSummary summary = new ParallelCustomerSync(new CustomerSync(db), Executors::newCachedThreadPool, 3)
+            .syncAll(companies(60));
+
+        assertEquals(60, summary.getCreated());
+        assertTrue(maxInFlight.get() <= 3, "max in flight " + maxInFlight.get());
+    }
+
+    @Test
+    void withVirtualThreadsFallsBackToAFixedPoolOfPlatformThreads() {
+        assumeFalse(ParallelCustomerSync.virtualThreadsAvailable());
+        Set<String> threadNames = ConcurrentHashMap.newKeySet();
+        InMemoryCustomerDataLayer db = new InMemoryCustomerDataLayer() {
+            @Override
+            public Customer findByExternalId(String externalId) {
+                threadNames.add(Thread.currentThread().getName());
+                return super.findByExternalId(externalId);
+            }
+        };
+
+        SyncSummary summary = ParallelCustomerSync.withVirtualThreads(new CustomerSync(db), 2).syncAll(companies(50));
+
+        assertEquals(50, summary.getCreated());
+        assertTrue(threadNames.size() <= 2, "ran on " + threadNames);
+        assertTrue(threadNames.stream().allMatch(name -> name.startsWith("pool-")), "ran on " + threadNames);
+    }
+
+    private static List<ExternalCustomer> companies(int count) {
+        List<ExternalCustomer> feed = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            feed.add(ExternalCustomer.builder()
+                .externalId("ext-" + i)
+                .companyNumber("cn-" + i)
+                .name("Company " + i)
+                .build());
+        }
+        return feed;
+    }
+}
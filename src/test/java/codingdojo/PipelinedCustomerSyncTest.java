@@ -0,0 +1,141 @@
+package codingdojo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import codingdojo.model.Customer;
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.SyncSummary;
+import codingdojo.repository.InMemoryCustomerDataLayer;
+import codingdojo.service.CustomerSync;
+import codingdojo.service.PipelinedCustomerSync;
+
+class PipelinedCustomerSyncTest {
+
+    @Test
+    void pipelinedSyncAppliesRecordsForTheSameCustomerInOrder() {
+        InMemoryCustomerDataLayer db = new InMemoryCustomerDataLayer();
+        List<ExternalCustomer> feed = rounds(5, 200);
+
+        SyncSummary summary = new PipelinedCustomerSync(new CustomerSync(db), 4).syncAll(feed);
+
+        assertEquals(200, summary.getCreated());
+        assertEquals(800, summary.getUpdated());
+        assertEquals(200, db.size());
+        assertEquals("Company 7 v4", db.findByExternalId("ext-7").getName());
+        for (int i = 0; i < feed.size(); i++) {
+            assertSame(feed.get(i), summary.getResults().get(i).externalCustomer());
+        }
+    }
+
+    @Test
+    void recordIsNotLookedUpBeforeTheEarlierOneForTheSameCustomerIsWritten() {
+        Map<String, List<String>> callsByExternalId = new ConcurrentHashMap<>();
+        InMemoryCustomerDataLayer db = new InMemoryCustomerDataLayer() {
+            @Override
+            public Customer findByExternalId(String externalId) {
+                log(externalId, "lookup");
+                return super.findByExternalId(externalId);
+            }
+
+            @Override
+            public Customer createCustomerRecord(Customer customer) {
+                sleep();
+                log(customer.getExternalId(), "write");
+                return super.createCustomerRecord(customer);
+            }
+
+            @Override
+            public Customer updateCustomerRecord(Customer customer) {
+                sleep();
+                log(customer.getExternalId(), "write");
+                return super.updateCustomerRecord(customer);
+            }
+
+            private void log(String externalId, String call) {
+                callsByExternalId.computeIfAbsent(externalId, key -> Collections.synchronizedList(new ArrayList<>())).add(call);
+            }
+        };
+
+        new PipelinedCustomerSync(new CustomerSync(db), 8).syncAll(rounds(4, 3));
+
+        for (List<String> calls : callsByExternalId.values()) {
+            assertEquals(List.of("lookup", "write", "lookup", "write", "lookup", "write", "lookup", "write"), calls);
+        }
+    }
+
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void failedWriteDrainsThePipelineAndIsRethrown() {
+        InMemoryCustomerDataLayer db = new InMemoryCustomerDataLayer() {
+            @Override
+            public Customer createCustomerRecord(Customer customer) {
+                if ("ext-3".equals(customer.getExternalId())) {
+                    throw new IllegalStateException("connection reset");
+                }
+                return super.createCustomerRecord(customer);
+            }
+        };
+
+        // a queue of one fills up right away, so a pipeline that stopped draining would hang
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+            () -> new PipelinedCustomerSync(new CustomerSync(db), 1).syncAll(rounds(1, 500)));
+
+        assertEquals("connection reset", thrown.getMessage());
+    }
+
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void failedLookupStopsThePipelineAndIsRethrown() {
+        InMemoryCustomerDataLayer db = new InMemoryCustomerDataLayer() {
+            @Override
+            public Customer findByExternalId(String externalId) {
+                if ("ext-3".equals(externalId)) {
+                    throw new IllegalStateException("connection reset");
+                }
+                return super.findByExternalId(externalId);
+            }
+        };
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+            () -> new PipelinedCustomerSync(new CustomerSync(db), 1).syncAll(rounds(1, 500)));
+
+        assertEquals("connection reset", thrown.getMessage());
+        // only records looked up before the failure may have been written
+        assertTrue(db.size() <= 3, db.size() + " customers written");
+    }
+
+    private static List<ExternalCustomer> rounds(int rounds, int customers) {
+        List<ExternalCustomer> feed = new ArrayList<>();
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < customers; i++) {
+                feed.add(ExternalCustomer.builder()
+                    .externalId("ext-" + i)
+                    .companyNumber("cn-" + i)
+                    .name("Company " + i + " v" + round)
+                    .build());
+            }
+        }
+        return feed;
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(2);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
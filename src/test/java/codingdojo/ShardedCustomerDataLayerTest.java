@@ -0,0 +1,116 @@
+package codingdojo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import codingdojo.model.Customer;
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.SyncSummary;
+import codingdojo.model.enums.CustomerType;
+import codingdojo.repository.CustomerDataLayer;
+import codingdojo.repository.InMemoryCustomerDataLayer;
+import codingdojo.repository.ShardDirectory;
+import codingdojo.repository.ShardedCustomerDataLayer;
+import codingdojo.service.CustomerSync;
+
+class ShardedCustomerDataLayerTest {
+
+    @Test
+    void customersAreSpreadOverShardsAndFoundAgain() {
+        ShardedCustomerDataLayer db = ShardedCustomerDataLayer.inMemory(4);
+        List<ExternalCustomer> feed = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            feed.add(ExternalCustomer.builder()
+                .externalId("ext-" + i)
+                .companyNumber("cn-" + i)
+                .name("Company " + i)
+                .build());
+        }
+
+        SyncSummary summary = new CustomerSync(db).syncAll(feed);
+        SyncSummary again = new CustomerSync(db).syncAll(feed);
+
+        assertEquals(400, summary.getCreated());
+        assertEquals(400, again.getUnchanged());
+        for (int shard = 0; shard < db.getShardCount(); shard++) {
+            int size = ((InMemoryCustomerDataLayer) db.getShard(shard)).size();
+            assertTrue(size > 50, "shard " + shard + " holds " + size);
+        }
+    }
+
+    @Test
+    void rekeyedCustomerIsFoundOnItsOriginalShard() {
+        ShardedCustomerDataLayer db = ShardedCustomerDataLayer.inMemory(4);
+        String externalId = findExternalIdOnAnotherShardThan(db, "470813-8895");
+        Customer existing = db.createCustomerRecord(Customer.builder()
+            .companyNumber("470813-8895")
+            .customerType(CustomerType.COMPANY)
+            .build());
+
+        new CustomerSync(db).syncWithDataLayer(ExternalCustomer.builder()
+            .externalId(externalId)
+            .companyNumber("470813-8895")
+            .name("Acme Inc.")
+            .build());
+
+        assertEquals(existing.getInternalId(), db.findByExternalId(externalId).getInternalId());
+        assertEquals(existing.getInternalId(), db.findByMasterExternalId(externalId).getInternalId());
+        assertEquals(existing.getInternalId(), db.findByExternalIds(List.of(externalId)).get(externalId).getInternalId());
+        assertEquals("Acme Inc.", db.findByExternalId(externalId).getName());
+    }
+
+    @Test
+    void routerRebuiltOverTheSameShardsFindsRekeyedCustomer() {
+        ShardedCustomerDataLayer db = ShardedCustomerDataLayer.inMemory(4);
+        String externalId = findExternalIdOnAnotherShardThan(db, "470813-8895");
+        Customer existing = db.createCustomerRecord(Customer.builder()
+            .companyNumber("470813-8895")
+            .customerType(CustomerType.COMPANY)
+            .build());
+        new CustomerSync(db).syncWithDataLayer(ExternalCustomer.builder()
+            .externalId(externalId)
+            .companyNumber("470813-8895")
+            .name("Acme Inc.")
+            .build());
+
+        // ACT
+        List<CustomerDataLayer> shards = new ArrayList<>();
+        List<ShardDirectory> directories = new ArrayList<>();
+        for (int shard = 0; shard < db.getShardCount(); shard++) {
+            shards.add(db.getShard(shard));
+            directories.add(db.getDirectory(shard));
+        }
+        ShardedCustomerDataLayer restarted = new ShardedCustomerDataLayer(shards, directories);
+
+        assertEquals(existing.getInternalId(), restarted.findByExternalId(externalId).getInternalId());
+        assertEquals(existing.getInternalId(), restarted.findByExternalIds(List.of(externalId)).get(externalId).getInternalId());
+        assertEquals(db.shardOf(existing), restarted.shardOf(existing));
+        SyncSummary summary = new CustomerSync(restarted).syncBatch(List.of(ExternalCustomer.builder()
+            .externalId(externalId)
+            .companyNumber("470813-8895")
+            .name("Acme Ltd.")
+            .build()));
+        assertEquals(1, summary.getUpdated());
+        assertEquals("Acme Ltd.", restarted.findByExternalId(externalId).getName());
+        int stored = 0;
+        for (CustomerDataLayer shard : shards) {
+            stored += ((InMemoryCustomerDataLayer) shard).size();
+        }
+        assertEquals(1, stored);
+    }
+
+    private static String findExternalIdOnAnotherShardThan(ShardedCustomerDataLayer db, String companyNumber) {
+        int companyShard = db.shardOf(Customer.builder().companyNumber(companyNumber).build());
+        for (int i = 0; ; i++) {
+            String externalId = "ext-" + i;
+            if (db.shardOf(Customer.builder().externalId(externalId).build()) != companyShard) {
+                return externalId;
+            }
+        }
+    }
+}
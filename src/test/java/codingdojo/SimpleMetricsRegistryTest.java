@@ -0,0 +1,76 @@
+package codingdojo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import codingdojo.metrics.SimpleMetricsRegistry;
+import codingdojo.metrics.Timer;
+import codingdojo.model.Customer;
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.enums.CustomerType;
+import codingdojo.service.CustomerSync;
+
+class SimpleMetricsRegistryTest {
+
+    @Test
+    void syncCountsOutcomesAndTimesDataLayerCalls() {
+        FakeDatabase db = new FakeDatabase();
+        db.addCustomer(Customer.builder()
+            .externalId("person-1")
+            .customerType(CustomerType.PERSON)
+            .internalId("1")
+            .build());
+        SimpleMetricsRegistry metrics = new SimpleMetricsRegistry();
+        CustomerSync sut = CustomerSync.builder().customerDataLayer(db).metricsRegistry(metrics).build();
+
+        sut.syncAll(List.of(
+            ExternalCustomer.builder().externalId("12345").companyNumber("470813-8895").name("Acme Inc.").build(),
+            ExternalCustomer.builder().externalId("12345").companyNumber("470813-8895").name("Acme Inc.").build(),
+            ExternalCustomer.builder().externalId("person-1").companyNumber("000-3234").build()));
+
+        assertEquals(1, metrics.counter("customer.sync.outcome", "outcome", "created").count());
+        assertEquals(1, metrics.counter("customer.sync.outcome", "outcome", "unchanged").count());
+        assertEquals(1, metrics.counter("customer.sync.outcome", "outcome", "conflict").count());
+        assertEquals(1, metrics.counter("customer.conflicts", "reason", "not-a-company").count());
+        assertEquals(2, metrics.counter("customer.lookup", "match", "external-id").count());
+        assertEquals(1, metrics.timer("customer.datalayer", "operation", "findByExternalIds").count());
+        assertEquals(1, metrics.timer("customer.datalayer", "operation", "createCustomerRecord").count());
+        assertEquals(3, metrics.timer("customer.sync.stage", "stage", "lookup").count());
+    }
+
+    @Test
+    void failedWritesAreTimed() {
+        FakeDatabase db = new FakeDatabase() {
+            @Override
+            public Customer createCustomerRecord(Customer customer) {
+                throw new IllegalStateException("store unavailable");
+            }
+        };
+        SimpleMetricsRegistry metrics = new SimpleMetricsRegistry();
+        CustomerSync sut = CustomerSync.builder().customerDataLayer(db).metricsRegistry(metrics).build();
+
+        assertThrows(IllegalStateException.class, () -> sut.syncWithDataLayer(
+            ExternalCustomer.builder().externalId("12345").companyNumber("470813-8895").name("Acme Inc.").build()));
+
+        assertEquals(1, metrics.timer("customer.sync.stage", "stage", "map").count());
+        assertEquals(1, metrics.timer("customer.sync.stage", "stage", "write").count());
+    }
+
+    @Test
+    void percentilesAreBoundedByTheBucketWidth() {
+        Timer timer = new SimpleMetricsRegistry().timer("latency");
+        for (long nanos = 1; nanos <= 1000; nanos++) {
+            timer.record(nanos * 1_000);
+        }
+
+        long p50 = timer.percentileNanos(0.5);
+        assertTrue(p50 >= 500_000 && p50 <= 500_000 * 1.125, "p50 was " + p50);
+        assertEquals(1_000_000, timer.percentileNanos(1.0));
+        assertEquals(1000, timer.count());
+    }
+}
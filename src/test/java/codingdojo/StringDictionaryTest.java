@@ -0,0 +1,70 @@
+package codingdojo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import codingdojo.codec.CustomerCodec;
+import codingdojo.model.Address;
+import codingdojo.model.Customer;
+import codingdojo.model.ShoppingList;
+import codingdojo.model.StringDictionary;
+import codingdojo.model.enums.CustomerType;
+import codingdojo.repository.InMemoryCustomerDataLayer;
+
+class StringDictionaryTest {
+
+    @Test
+    void stopsSharingNewValuesOnceFull() {
+        StringDictionary dictionary = new StringDictionary(1);
+        String lipstick = dictionary.intern(new String("lipstick"));
+
+        assertSame(lipstick, dictionary.intern(new String("lipstick")));
+        String blusher = new String("blusher");
+        assertSame(blusher, dictionary.intern(blusher));
+        assertEquals(1, dictionary.size());
+    }
+
+    @Test
+    void storedCustomersShareVocabulary() {
+        InMemoryCustomerDataLayer dataLayer = new InMemoryCustomerDataLayer("", new StringDictionary(100));
+        Customer first = dataLayer.findByInternalId(dataLayer.createCustomerRecord(customer("1")).getInternalId());
+        Customer second = dataLayer.findByInternalId(dataLayer.createCustomerRecord(customer("2")).getInternalId());
+
+        assertSame(first.getPreferredStore(), second.getPreferredStore());
+        assertSame(first.getAddress().city(), second.getAddress().city());
+        assertNotSame(first.getAddress().street(), second.getAddress().street());
+        assertSame(first.getShoppingLists().get(0).products().get(0), second.getShoppingLists().get(0).products().get(0));
+    }
+
+    @Test
+    void decodedCustomersShareVocabulary() {
+        StringDictionary dictionary = new StringDictionary(100);
+        ByteBuffer buffer = ByteBuffer.allocate(CustomerCodec.encodedSize(customer("1")));
+        CustomerCodec.encode(customer("1"), buffer);
+
+        Customer first = CustomerCodec.decode(buffer.flip(), dictionary);
+        Customer second = CustomerCodec.decode(buffer.rewind(), dictionary);
+
+        assertEquals(first, second);
+        assertSame(first.getPreferredStore(), second.getPreferredStore());
+        assertSame(first.getAddress().postalCode(), second.getAddress().postalCode());
+        assertSame(first.getShoppingLists().get(0).products().get(1), second.getShoppingLists().get(0).products().get(1));
+    }
+
+    private static Customer customer(String externalId) {
+        return Customer.builder()
+            .externalId(externalId)
+            .masterExternalId(externalId)
+            .customerType(CustomerType.PERSON)
+            .preferredStore(new String("Nordstan"))
+            .address(new Address(new String("123 main st"), new String("Helsingborg"), new String("SE-123 45")))
+            .shoppingLists(List.of(new ShoppingList(new String("lipstick"), new String("blusher"))))
+            .build();
+    }
+}
@@ -0,0 +1,138 @@
+package codingdojo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import codingdojo.model.Customer;
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.ShoppingList;
+import codingdojo.model.SyncSummary;
+import codingdojo.repository.InMemoryCustomerDataLayer;
+import codingdojo.service.CustomerSync;
+import codingdojo.service.WindowedCustomerSync;
+
+class WindowedCustomerSyncTest {
+
+    @Test
+    void burstForOneCustomerIsSyncedAsOneMergedRecord() {
+        InMemoryCustomerDataLayer db = new InMemoryCustomerDataLayer();
+        WindowedCustomerSync sut = new WindowedCustomerSync(new CustomerSync(db), Duration.ofHours(1), 100);
+
+        sut.submit(company(1, "Acme", new ShoppingList("lipstick")));
+        sut.submit(company(3, "Acme Ltd.", new ShoppingList("blusher")));
+        sut.submit(company(2, "Acme Inc.", new ShoppingList("lipstick"), new ShoppingList("foundation")));
+        sut.submit(ExternalCustomer.builder().externalId("67890").name("Joe Bloggs").build());
+        assertEquals(0, db.size());
+        assertEquals(2, sut.getPendingCount());
+        assertEquals(2, sut.getMergedCount());
+
+        // ACT
+        SyncSummary summary = sut.flush();
+
+        assertEquals(2, summary.getCreated());
+        Customer company = db.findByExternalId("12345");
+        assertEquals("Acme Ltd.", company.getName());
+        assertEquals(3L, company.getAppliedSequenceNumber());
+        assertEquals(List.of(new ShoppingList("lipstick"), new ShoppingList("foundation"), new ShoppingList("blusher")),
+            company.getShoppingLists());
+        assertEquals(0, sut.getPendingCount());
+    }
+
+    @Test
+    void fieldFromAnOlderRecordDoesNotWinOverANewerOneArrivingOutOfOrder() {
+        InMemoryCustomerDataLayer db = new InMemoryCustomerDataLayer();
+        WindowedCustomerSync sut = new WindowedCustomerSync(new CustomerSync(db), Duration.ofHours(1), 100);
+        ExternalCustomer first = company(1, "Acme");
+        first.setPreferredStore("Nordstan");
+        ExternalCustomer newer = company(2, "Acme");
+        newer.setPreferredStore("Kungsgatan");
+
+        sut.submit(first);
+        sut.submit(company(3, "Acme Ltd."));
+        sut.submit(newer);
+        sut.flush();
+
+        Customer company = db.findByExternalId("12345");
+        assertEquals("Kungsgatan", company.getPreferredStore());
+        assertEquals("Acme Ltd.", company.getName());
+        assertEquals(3L, company.getAppliedSequenceNumber());
+    }
+
+    @Test
+    void recordsAreGroupedByEitherKey() {
+        InMemoryCustomerDataLayer db = new InMemoryCustomerDataLayer();
+        WindowedCustomerSync sut = new WindowedCustomerSync(new CustomerSync(db), Duration.ofHours(1), 100);
+
+        sut.submit(company(1, "Acme"));
+        sut.submit(ExternalCustomer.builder().companyNumber("470813-8895").name("Acme Ltd.").sequenceNumber(2L).build());
+        sut.submit(ExternalCustomer.builder().externalId("12345").preferredStore("Nordstan").sequenceNumber(3L).build());
+        sut.submit(ExternalCustomer.builder().externalId("67890").companyNumber("470813-8895").name("Other").build());
+
+        assertEquals(2, sut.getPendingCount());
+        assertEquals(2, sut.getMergedCount());
+        sut.flush();
+        Customer company = db.findByExternalId("12345");
+        assertEquals("Acme Ltd.", company.getName());
+        assertEquals("Nordstan", company.getPreferredStore());
+    }
+
+    @Test
+    void closeSyncsPendingRecordsAndRejectsLaterOnes() {
+        InMemoryCustomerDataLayer db = new InMemoryCustomerDataLayer();
+        WindowedCustomerSync sut = new WindowedCustomerSync(new CustomerSync(db), Duration.ofHours(1), 100);
+        sut.submit(company(1, "Acme"));
+
+        sut.close();
+
+        assertEquals(1, db.size());
+        assertEquals(1, sut.getSummary().getCreated());
+        assertThrows(IllegalStateException.class, () -> sut.submit(company(2, "Acme Ltd.")));
+    }
+
+    @Test
+    void failedFlushOfAFullWindowIsCountedAndNewRecordsAreRejected() {
+        RuntimeException[] failure = {new IllegalStateException("connection reset")};
+        InMemoryCustomerDataLayer db = new InMemoryCustomerDataLayer() {
+            @Override
+            public Customer createCustomerRecord(Customer customer) {
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+                return super.createCustomerRecord(customer);
+            }
+        };
+        WindowedCustomerSync sut = new WindowedCustomerSync(new CustomerSync(db), Duration.ofHours(1), 2);
+
+        sut.submit(ExternalCustomer.builder().externalId("12345").name("Acme").build());
+        sut.submit(ExternalCustomer.builder().externalId("67890").name("Joe Bloggs").build());
+
+        assertEquals(1, sut.getFailedFlushCount());
+        assertEquals("connection reset", sut.getLastFlushFailure().getMessage());
+        assertEquals(2, sut.getPendingCount());
+        IllegalStateException rejected = assertThrows(IllegalStateException.class,
+            () -> sut.submit(ExternalCustomer.builder().externalId("13579").name("Jane Doe").build()));
+        assertEquals("connection reset", rejected.getCause().getMessage());
+
+        failure[0] = null;
+        assertEquals(2, sut.flush().getCreated());
+        assertNull(sut.getLastFlushFailure());
+        sut.submit(ExternalCustomer.builder().externalId("13579").name("Jane Doe").build());
+        assertEquals(1, sut.getPendingCount());
+    }
+
+    private static ExternalCustomer company(long sequenceNumber, String name, ShoppingList... shoppingLists) {
+        return ExternalCustomer.builder()
+            .externalId("12345")
+            .companyNumber("470813-8895")
+            .name(name)
+            .sequenceNumber(sequenceNumber)
+            .shoppingLists(List.of(shoppingLists))
+            .build();
+    }
+}
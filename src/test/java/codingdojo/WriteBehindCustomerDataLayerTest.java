@@ -0,0 +1,146 @@
+package codingdojo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import codingdojo.model.Customer;
+import codingdojo.model.ExternalCustomer;
+import codingdojo.model.enums.CustomerField;
+import codingdojo.model.enums.CustomerType;
+import codingdojo.repository.InMemoryCustomerDataLayer;
+import codingdojo.repository.WriteBehindCustomerDataLayer;
+import codingdojo.service.CustomerSync;
+
+class WriteBehindCustomerDataLayerTest {
+
+    @Test
+    void repeatedUpdatesOfOneCustomerAreWrittenOnce() {
+        CountingDataLayer db = new CountingDataLayer();
+        WriteBehindCustomerDataLayer writeBehind = new WriteBehindCustomerDataLayer(db, 100, Duration.ofHours(1));
+        CustomerSync sut = new CustomerSync(writeBehind);
+
+        for (int i = 0; i < 5; i++) {
+            sut.syncWithDataLayer(ExternalCustomer.builder()
+                .externalId("12345")
+                .companyNumber("470813-8895")
+                .name("Acme Inc. v" + i)
+                .build());
+        }
+        assertEquals(0, db.updates);
+        assertEquals(1, writeBehind.getPendingCount());
+        assertEquals(3, writeBehind.getCoalescedCount());
+
+        writeBehind.close();
+
+        assertEquals(1, db.updates);
+        assertEquals("Acme Inc. v4", db.findByExternalId("12345").getName());
+    }
+
+    @Test
+    void flushesOnceTheBufferIsFull() {
+        CountingDataLayer db = new CountingDataLayer();
+        WriteBehindCustomerDataLayer writeBehind = new WriteBehindCustomerDataLayer(db, 2, Duration.ofHours(1));
+        Customer first = db.createCustomerRecord(Customer.builder().externalId("1").customerType(CustomerType.PERSON).build());
+        Customer second = db.createCustomerRecord(Customer.builder().externalId("2").customerType(CustomerType.PERSON).build());
+
+        writeBehind.updateCustomerFields(first, Set.of(CustomerField.NAME));
+        assertEquals(0, db.updates);
+        writeBehind.updateCustomerRecord(second);
+
+        assertEquals(2, db.updates);
+        assertEquals(0, writeBehind.getPendingCount());
+    }
+
+    @Test
+    void lookupsSeeBufferedRekey() {
+        CountingDataLayer db = new CountingDataLayer();
+        WriteBehindCustomerDataLayer writeBehind = new WriteBehindCustomerDataLayer(db, 100, Duration.ofHours(1));
+        Customer customer = db.createCustomerRecord(Customer.builder()
+            .companyNumber("470813-8895")
+            .customerType(CustomerType.COMPANY)
+            .build());
+        Customer copy = Customer.builder()
+            .internalId(customer.getInternalId())
+            .externalId("12345")
+            .companyNumber("000-3234")
+            .customerType(CustomerType.COMPANY)
+            .build();
+
+        writeBehind.updateCustomerRecord(copy);
+
+        assertSame(copy, writeBehind.findByExternalId("12345"));
+        assertSame(copy, writeBehind.findByCompanyNumber("000-3234"));
+        assertEquals(null, writeBehind.findByCompanyNumber("470813-8895"));
+        writeBehind.close();
+        assertThrows(IllegalStateException.class, () -> writeBehind.updateCustomerRecord(copy));
+    }
+
+    @Test
+    void failedBackgroundFlushesAreCounted() throws InterruptedException {
+        CountingDataLayer db = new CountingDataLayer() {
+            @Override
+            public void updateCustomerRecords(Collection<Customer> customers) {
+                throw new IllegalStateException("connection reset");
+            }
+        };
+        WriteBehindCustomerDataLayer writeBehind = new WriteBehindCustomerDataLayer(db, 100, Duration.ofMillis(5));
+        Customer customer = db.createCustomerRecord(Customer.builder().externalId("1").customerType(CustomerType.PERSON).build());
+
+        writeBehind.updateCustomerRecord(customer);
+        for (int i = 0; i < 400 && writeBehind.getFailedFlushCount() == 0; i++) {
+            Thread.sleep(5);
+        }
+
+        assertTrue(writeBehind.getFailedFlushCount() > 0);
+        assertEquals("connection reset", writeBehind.getLastFlushFailure().getMessage());
+        assertEquals(1, writeBehind.getPendingCount());
+    }
+
+    @Test
+    void failedFlushOfAFullBufferKeepsTheUpdateBuffered() {
+        RuntimeException[] failure = {new IllegalStateException("connection reset")};
+        CountingDataLayer db = new CountingDataLayer() {
+            @Override
+            public void updateCustomerRecords(Collection<Customer> customers) {
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+                super.updateCustomerRecords(customers);
+            }
+        };
+        WriteBehindCustomerDataLayer writeBehind = new WriteBehindCustomerDataLayer(db, 1, Duration.ofHours(1));
+        Customer customer = db.createCustomerRecord(Customer.builder().externalId("1").customerType(CustomerType.PERSON).build());
+        customer.setName("Jane Doe");
+
+        writeBehind.updateCustomerRecord(customer);
+
+        assertEquals(1, writeBehind.getFailedFlushCount());
+        assertEquals("connection reset", writeBehind.getLastFlushFailure().getMessage());
+        assertEquals(1, writeBehind.getPendingCount());
+        assertEquals("Jane Doe", writeBehind.findByExternalId("1").getName());
+
+        failure[0] = null;
+        writeBehind.flush();
+
+        assertEquals(0, writeBehind.getPendingCount());
+        assertEquals("Jane Doe", db.findByExternalId("1").getName());
+    }
+
+    private static class CountingDataLayer extends InMemoryCustomerDataLayer {
+        int updates;
+
+        @Override
+        public Customer updateCustomerRecord(Customer customer) {
+            updates++;
+            return super.updateCustomerRecord(customer);
+        }
+    }
+}